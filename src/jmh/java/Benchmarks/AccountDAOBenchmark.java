@@ -0,0 +1,55 @@
+package Benchmarks;
+
+import DAO.AccountDAO;
+import Model.Account;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Login lookups against 10k accounts, for both a matching and a wrong
+ * password.
+ *
+ * Run with: mvn -Pjmh package && java -jar target/benchmarks.jar AccountDAOBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = BenchmarkDatabase.DB_URL)
+public class AccountDAOBenchmark {
+    private static final int ACCOUNTS = 10_000;
+
+    private AccountDAO accountDAO;
+
+    @Setup
+    public void setUp() {
+        BenchmarkDatabase.seed(ACCOUNTS, 1);
+        accountDAO = new AccountDAO();
+    }
+
+    @Benchmark
+    public Account verifyLogin() {
+        return accountDAO.verifyLogin(new Account(randomUsername(), "password"));
+    }
+
+    @Benchmark
+    public Account verifyLoginWrongPassword() {
+        return accountDAO.verifyLogin(new Account(randomUsername(), "wrong password"));
+    }
+
+    private static String randomUsername() {
+        return "benchuser" + (2 + ThreadLocalRandom.current().nextInt(ACCOUNTS - 1));
+    }
+}
@@ -0,0 +1,53 @@
+package Benchmarks;
+
+import Util.ConnectionUtil;
+import Util.MigrationRunner;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Fills the database with generated accounts and messages for benchmarks.
+ *
+ * Benchmarks fork with socialmedia.db.url pointing at DB_URL, so seeding
+ * never touches the database the app and tests use. Rows are generated by
+ * H2 itself with SYSTEM_RANGE, which seeds a million messages in seconds.
+ */
+public class BenchmarkDatabase {
+    /**
+     * Database used by every forked benchmark JVM
+     */
+    public static final String DB_URL = "-Dsocialmedia.db.url=jdbc:h2:./target/benchmark-db/db;";
+
+    /**
+     * Reset the schema and seed it. Account 1 is testuser1 / password, as in
+     * SocialMedia.sql; the rest are benchuser{N} / password. Messages are
+     * spread evenly over the accounts, with IDs 1 to messages in posting order.
+     * @param accounts total accounts, at least 1
+     * @param messages total messages, at least 1
+     */
+    public static void seed(int accounts, int messages) {
+        ConnectionUtil.resetTestDatabase();
+        Connection connection = ConnectionUtil.getConnection();
+        try {
+            PreparedStatement insertAccounts = connection.prepareStatement(
+                "INSERT INTO account (username, password) SELECT 'benchuser' || X, 'password' FROM SYSTEM_RANGE(2, ?)");
+            insertAccounts.setInt(1, accounts);
+            insertAccounts.executeUpdate();
+
+            PreparedStatement insertMessages = connection.prepareStatement(
+                "INSERT INTO message (posted_by, message_text, time_posted_epoch) "
+                + "SELECT MOD(X, ?) + 1, 'seeded message ' || X, 1669947792 + X FROM SYSTEM_RANGE(2, ?)");
+            insertMessages.setInt(1, accounts);
+            insertMessages.setInt(2, messages);
+            insertMessages.executeUpdate();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not seed the benchmark database", e);
+        } finally {
+            ConnectionUtil.closeConnection(connection);
+        }
+        // build the query indexes once over the full table rather than row by row
+        MigrationRunner.migrate();
+    }
+}
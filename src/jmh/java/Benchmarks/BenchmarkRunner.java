@@ -0,0 +1,36 @@
+package Benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of target/benchmarks.jar. Takes the usual JMH command line and
+ * always adds the GC profiler, so every run reports allocation rate
+ * (gc.alloc.rate.norm is bytes per operation) next to throughput.
+ *
+ * Listing and help flags are handed straight to JMH.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        boolean hasGcProfiler = commandLine.getProfilers().stream()
+            .anyMatch(profiler -> profiler.getKlass().equals(GCProfiler.class.getName())
+                || profiler.getKlass().equals("gc"));
+        if (!hasGcProfiler) {
+            options.addProfiler(GCProfiler.class);
+        }
+        Options built = options.build();
+        new Runner(built).run();
+    }
+}
@@ -0,0 +1,128 @@
+package Benchmarks;
+
+import Controller.JsonCodec;
+import Controller.MessageFragments;
+import Model.Account;
+import Model.Message;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the controller's old habit of building an ObjectMapper per request
+ * against the shared JsonCodec, for the request and response bodies the API
+ * actually handles, and both against joining cached message fragments.
+ *
+ * Run with: mvn -Pjmh package && java -jar target/benchmarks.jar JsonCodecBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+    @Param({"10", "1000"})
+    public int listSize;
+
+    private JsonCodec codec;
+    private String accountJson;
+    private String messageJson;
+    private Message message;
+    private List<Message> messages;
+    private MessageFragments fragments;
+    private ByteArrayOutputStream listBuffer;
+
+    @Setup
+    public void setUp() {
+        codec = new JsonCodec();
+        accountJson = "{\"username\": \"user\", \"password\": \"password\"}";
+        messageJson = "{\"posted_by\":1, \"message_text\": \"hello message\", \"time_posted_epoch\": 1669947792}";
+        message = new Message(1, 1, "hello message", 1669947792);
+        messages = new ArrayList<>();
+        for (int i = 1; i <= listSize; i++) {
+            messages.add(new Message(i, 1 + i % 50, "test message " + i, 1669947792L + i));
+        }
+        fragments = new MessageFragments(codec, 10_000);
+        listBuffer = new ByteArrayOutputStream(64 * 1024);
+    }
+
+    @Benchmark
+    public Account readAccountPerRequestMapper() throws JsonProcessingException {
+        return new ObjectMapper().readValue(accountJson, Account.class);
+    }
+
+    @Benchmark
+    public Account readAccountSharedCodec() {
+        return codec.readAccount(accountJson);
+    }
+
+    /**
+     * The old POST /messages path: parse the body and write the reply with a
+     * fresh mapper.
+     */
+    @Benchmark
+    public String postMessagePerRequestMapper() throws JsonProcessingException {
+        ObjectMapper mapper = new ObjectMapper();
+        Message posted = mapper.readValue(messageJson, Message.class);
+        return mapper.writeValueAsString(posted);
+    }
+
+    @Benchmark
+    public String postMessageSharedCodec() {
+        return codec.writeMessage(codec.readMessage(messageJson));
+    }
+
+    @Benchmark
+    public String writeMessagePerRequestMapper() throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsString(message);
+    }
+
+    @Benchmark
+    public String writeMessageSharedCodec() {
+        return codec.writeMessage(message);
+    }
+
+    @Benchmark
+    public String writeMessageListPerRequestMapper() throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsString(messages);
+    }
+
+    @Benchmark
+    public String writeMessageListSharedCodec() {
+        return codec.writeMessages(messages);
+    }
+
+    /**
+     * The list endpoints' path once every message's JSON fragment is cached:
+     * the array is joined from stored bytes
+     */
+    @Benchmark
+    public int writeMessageListFragments() {
+        listBuffer.reset();
+        listBuffer.write('[');
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                listBuffer.write(',');
+            }
+            listBuffer.writeBytes(fragments.get(messages.get(i)));
+        }
+        listBuffer.write(']');
+        return listBuffer.size();
+    }
+}
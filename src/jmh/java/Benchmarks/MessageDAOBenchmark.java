@@ -0,0 +1,71 @@
+package Benchmarks;
+
+import DAO.MessageDAO;
+import Model.Message;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MessageDAO queries against tables of 1k, 100k and 1M messages spread over
+ * 100 accounts, so account 1 owns 1% of them.
+ *
+ * insertMessage adds rows as it runs, so later iterations see a slightly
+ * larger table; against the seeded sizes the drift is small.
+ *
+ * Run with: mvn -Pjmh package && java -jar target/benchmarks.jar MessageDAOBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = BenchmarkDatabase.DB_URL)
+public class MessageDAOBenchmark {
+    private static final int ACCOUNTS = 100;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private MessageDAO messageDAO;
+    private Message newMessage;
+
+    @Setup
+    public void setUp() {
+        BenchmarkDatabase.seed(ACCOUNTS, rows);
+        messageDAO = new MessageDAO();
+        newMessage = new Message(1, "benchmark message", 1669947792L);
+    }
+
+    @Benchmark
+    public Message insertMessage() {
+        return messageDAO.insertMessage(newMessage);
+    }
+
+    @Benchmark
+    public Message getMessageById() {
+        return messageDAO.getMessageById(1 + ThreadLocalRandom.current().nextInt(rows));
+    }
+
+    @Benchmark
+    public List<Message> getAllMessages() {
+        return messageDAO.getAllMessages();
+    }
+
+    @Benchmark
+    public List<Message> getAllMessagesByUser() {
+        return messageDAO.getAllMessagesByUser(1 + ThreadLocalRandom.current().nextInt(ACCOUNTS));
+    }
+}
@@ -0,0 +1,130 @@
+package Benchmarks;
+
+import DAO.MessageStores;
+import Model.Message;
+import Service.AccountDirectory;
+import Service.MessageService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MessageService paths the routes call, including validation and the
+ * message cache. With 1k rows every lookup is soon a cache hit; with 100k
+ * rows most miss the default 10k-entry cache. Each runs on both message
+ * stores; the memory store starts from a new log seeded from the database.
+ *
+ * Run with: mvn -Pjmh package && java -jar target/benchmarks.jar MessageServiceBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = BenchmarkDatabase.DB_URL)
+public class MessageServiceBenchmark {
+    private static final int ACCOUNTS = 100;
+
+    private static final Path LOG_PATH = Paths.get("target/benchmark-db/messages.wal");
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"jdbc", "memory"})
+    public String store;
+
+    private MessageService messageService;
+    private Message newMessage;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkDatabase.seed(ACCOUNTS, rows);
+        Files.deleteIfExists(LOG_PATH);
+        System.setProperty("socialmedia.store", store);
+        System.setProperty("socialmedia.store.wal.path", LOG_PATH.toString());
+        messageService = new MessageService(new AccountDirectory(), MessageStores.configured());
+        newMessage = new Message(1, "benchmark message", 1669947792L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        messageService.shutdown();
+        MessageStores.closeMemoryStore();
+    }
+
+    @Benchmark
+    public Message createMessage() {
+        return messageService.createMessage(newMessage);
+    }
+
+    /**
+     * Posts from many threads at once, which the group-commit writer folds
+     * into shared transactions
+     */
+    @Benchmark
+    @Threads(16)
+    public Message createMessageConcurrently() {
+        return messageService.createMessage(newMessage);
+    }
+
+    @Benchmark
+    public Message getMessageById() {
+        return messageService.getMessageById(1 + ThreadLocalRandom.current().nextInt(rows));
+    }
+
+    @Benchmark
+    public List<Message> getMessagesByUserPage() {
+        return messageService.getMessagesByUserPage(1 + ThreadLocalRandom.current().nextInt(ACCOUNTS), 0,
+            MessageService.DEFAULT_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Message> getMessagesPage() {
+        return messageService.getMessagesPage(ThreadLocalRandom.current().nextInt(rows), MessageService.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * A page of the site-wide feed starting at a random time; seeded
+     * messages are one second apart
+     */
+    @Benchmark
+    public List<Message> getMessagesByTime() {
+        return messageService.getMessagesByTime(1669947792L + ThreadLocalRandom.current().nextInt(rows), 0,
+            Long.MAX_VALUE, MessageService.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Two words every seeded message has, so each ID probed is a hit
+     */
+    @Benchmark
+    public List<Message> searchCommonWords() {
+        return messageService.searchMessages("seeded message", Integer.MAX_VALUE, MessageService.DEFAULT_SEARCH_RESULTS);
+    }
+
+    /**
+     * A common word and one only a single message has
+     */
+    @Benchmark
+    public List<Message> searchRareWord() {
+        return messageService.searchMessages("message " + (1 + ThreadLocalRandom.current().nextInt(rows)),
+            Integer.MAX_VALUE, MessageService.DEFAULT_SEARCH_RESULTS);
+    }
+}
@@ -0,0 +1,136 @@
+package Benchmarks;
+
+import Controller.SocialMediaController;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import io.javalin.Javalin;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Drives the real HTTP routes with many concurrent clients, once with Jetty
+ * on platform threads and once on virtual threads. Throughput mode gives
+ * requests per second; sample mode gives the latency distribution,
+ * including p99.
+ *
+ * Each mode runs in its own forked JVM, since the thread mode is fixed at
+ * startup, on the benchmark database. The bulkheads are sized well above
+ * the client count, so the runs compare thread modes rather than time spent
+ * turning requests away; any response other than a 200 is still counted in
+ * the "errors" column rather than passing as a fast success. Virtual threads need a JDK 21+ runtime; on older JDKs the
+ * "virtual" rows silently measure platform threads (a warning is printed).
+ *
+ * Run from the project root with:
+ * mvn -Pjmh package && java -jar target/benchmarks.jar ThreadModeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(128)
+@Fork(value = 1, jvmArgsAppend = {BenchmarkDatabase.DB_URL, "-Dsocialmedia.bulkhead.maxRequests=2000"})
+public class ThreadModeBenchmark {
+    private static final int SEEDED_MESSAGES = 1000;
+
+    @Param({"platform", "virtual"})
+    public String threadMode;
+
+    private Javalin app;
+    private HttpClient webClient;
+    private String baseUrl;
+
+    @Setup
+    public void setUp() {
+        System.setProperty("socialmedia.virtualThreads", String.valueOf("virtual".equals(threadMode)));
+        BenchmarkDatabase.seed(1, SEEDED_MESSAGES);
+
+        app = new SocialMediaController().startAPI();
+        app.start(0);
+        baseUrl = "http://localhost:" + app.port();
+        webClient = HttpClient.newHttpClient();
+    }
+
+    @TearDown
+    public void tearDown() {
+        app.stop();
+    }
+
+    @Benchmark
+    public int getMessageById(Responses responses) throws IOException, InterruptedException {
+        int messageId = 1 + ThreadLocalRandom.current().nextInt(SEEDED_MESSAGES);
+        return responses.count(get("/messages/" + messageId));
+    }
+
+    @Benchmark
+    public int getMessagesByUserPage(Responses responses) throws IOException, InterruptedException {
+        return responses.count(
+            get("/accounts/1/messages?limit=50&after_id=" + ThreadLocalRandom.current().nextInt(SEEDED_MESSAGES)));
+    }
+
+    @Benchmark
+    public int login(Responses responses) throws IOException, InterruptedException {
+        return responses.count(post("/login", "{\"username\": \"testuser1\", \"password\": \"password\"}"));
+    }
+
+    @Benchmark
+    public int postMessage(Responses responses) throws IOException, InterruptedException {
+        return responses.count(
+            post("/messages", "{\"posted_by\":1, \"message_text\": \"benchmark\", \"time_posted_epoch\": 1669947792}"));
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(baseUrl + path)).build();
+        return webClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private int post(String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    /**
+     * Responses other than 200, reported by JMH next to each benchmark's
+     * score, so that 503s from a full bulkhead cannot pass for throughput.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Responses {
+        public long errors;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            errors = 0;
+        }
+
+        int count(int status) {
+            if (status != 200) {
+                errors++;
+            }
+            return status;
+        }
+    }
+}
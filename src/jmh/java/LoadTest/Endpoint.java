@@ -0,0 +1,108 @@
+package LoadTest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The kinds of request the load test sends, and how to build each one
+ * against a database seeded by BenchmarkDatabase.
+ */
+enum Endpoint {
+    REGISTER("POST /register") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, Seed seed) {
+            String username = "loaduser" + REGISTERED.incrementAndGet() + "-" + System.nanoTime();
+            return post(baseUrl + "/register", "{\"username\": \"" + username + "\", \"password\": \"password\"}");
+        }
+    },
+    LOGIN("POST /login") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, Seed seed) {
+            int account = seed.randomAccount();
+            String username = account == 1 ? "testuser1" : "benchuser" + account;
+            return post(baseUrl + "/login", "{\"username\": \"" + username + "\", \"password\": \"password\"}");
+        }
+    },
+    POST("POST /messages") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, Seed seed) {
+            return post(baseUrl + "/messages", "{\"posted_by\": " + seed.randomAccount()
+                + ", \"message_text\": \"load test message\", \"time_posted_epoch\": 1669947792}");
+        }
+    },
+    GET("GET /messages/{message_id}") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, Seed seed) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/messages/" + seed.randomMessage()));
+        }
+    },
+    PAGE("GET /messages?after_id&limit") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, Seed seed) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/messages?limit=100&after_id=" + seed.randomMessage()));
+        }
+    },
+    PATCH("PATCH /messages/{message_id}") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, Seed seed) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/messages/" + seed.randomMessage()))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"edited by load test\"}"))
+                .header("Content-Type", "application/json");
+        }
+    },
+    DELETE("DELETE /messages/{message_id}") {
+        @Override
+        HttpRequest.Builder request(String baseUrl, Seed seed) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/messages/" + seed.randomMessage())).DELETE();
+        }
+    };
+
+    private static final AtomicLong REGISTERED = new AtomicLong();
+
+    final String label;
+
+    Endpoint(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @param baseUrl e.g. http://localhost:12345
+     * @param seed what the database was seeded with
+     * @return a request builder, without a timeout
+     */
+    abstract HttpRequest.Builder request(String baseUrl, Seed seed);
+
+    HttpRequest build(String baseUrl, Seed seed, Duration timeout) {
+        return request(baseUrl, seed).timeout(timeout).build();
+    }
+
+    private static HttpRequest.Builder post(String url, String body) {
+        return HttpRequest.newBuilder(URI.create(url))
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .header("Content-Type", "application/json");
+    }
+
+    /**
+     * How many accounts and messages the database was seeded with.
+     */
+    static class Seed {
+        final int accounts;
+        final int messages;
+
+        Seed(int accounts, int messages) {
+            this.accounts = accounts;
+            this.messages = messages;
+        }
+
+        int randomAccount() {
+            return 1 + ThreadLocalRandom.current().nextInt(accounts);
+        }
+
+        int randomMessage() {
+            return 1 + ThreadLocalRandom.current().nextInt(messages);
+        }
+    }
+}
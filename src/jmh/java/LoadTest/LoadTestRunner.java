@@ -0,0 +1,252 @@
+package LoadTest;
+
+import Benchmarks.BenchmarkDatabase;
+import Controller.SocialMediaController;
+import Util.LatencyHistogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.javalin.Javalin;
+
+/**
+ * Starts the app on an ephemeral port against a freshly seeded database and
+ * drives it with a weighted mix of requests at a fixed arrival rate.
+ *
+ * Request i is due at start + i / rate, whether or not earlier requests have
+ * come back, and its latency is measured from that due time rather than from
+ * when it was actually sent. A server stall therefore shows up in the
+ * percentiles for every request that should have been sent during it,
+ * instead of being hidden by the generator slowing down (coordinated
+ * omission). The uncorrected service time is reported alongside.
+ *
+ * Build with "mvn -Pjmh package -DskipTests", then run from the project root:
+ * java -cp target/benchmarks.jar LoadTest.LoadTestRunner [--rate 500] [--duration 30] [--warmup 5]
+ *     [--mix register=5,login=15,post=20,get=35,page=5,patch=10,delete=10]
+ *     [--accounts 100] [--messages 10000] [--json target/loadtest-report.json]
+ */
+public class LoadTestRunner {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        int rate = Integer.parseInt(options.getOrDefault("rate", "500"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        Map<Endpoint, Integer> mix = parseMix(options.getOrDefault("mix",
+            "register=5,login=15,post=20,get=35,page=5,patch=10,delete=10"));
+        Endpoint.Seed seed = new Endpoint.Seed(
+            Integer.parseInt(options.getOrDefault("accounts", "100")),
+            Integer.parseInt(options.getOrDefault("messages", "10000")));
+        File jsonFile = new File(options.getOrDefault("json", "target/loadtest-report.json"));
+
+        if (System.getProperty("socialmedia.db.url") == null) {
+            System.setProperty("socialmedia.db.url", "jdbc:h2:./target/loadtest-db/db;");
+        }
+        BenchmarkDatabase.seed(seed.accounts, seed.messages);
+        Javalin app = new SocialMediaController().startAPI().start(0);
+        try {
+            String baseUrl = "http://localhost:" + app.port();
+            Map<Endpoint, Stats> results = run(baseUrl, seed, mix, rate, warmupSeconds, durationSeconds);
+
+            Map<String, Object> report = report(results, rate, durationSeconds, mix);
+            System.out.println(text(results, rate, durationSeconds));
+            jsonFile.getAbsoluteFile().getParentFile().mkdirs();
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(jsonFile, report);
+            System.out.println("JSON report written to " + jsonFile);
+        } finally {
+            app.stop();
+        }
+    }
+
+    /**
+     * Send requests at the given rate for warmup plus duration seconds,
+     * recording only those due after the warmup.
+     */
+    private static Map<Endpoint, Stats> run(String baseUrl, Endpoint.Seed seed, Map<Endpoint, Integer> mix,
+                                            int rate, int warmupSeconds, int durationSeconds)
+            throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        Map<Endpoint, Stats> results = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : mix.keySet()) {
+            results.put(endpoint, new Stats());
+        }
+        Endpoint[] weighted = weighted(mix);
+        AtomicInteger inFlight = new AtomicInteger();
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        for (long i = 0; ; i++) {
+            long due = start + i * intervalNanos;
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Endpoint endpoint = weighted[ThreadLocalRandom.current().nextInt(weighted.length)];
+            Stats stats = due >= measureFrom ? results.get(endpoint) : null;
+            HttpRequest request = endpoint.build(baseUrl, seed, REQUEST_TIMEOUT);
+            long sent = System.nanoTime();
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                long now = System.nanoTime();
+                if (stats != null) {
+                    stats.record(due, sent, now, error == null ? response.statusCode() : 0);
+                }
+                inFlight.decrementAndGet();
+            });
+        }
+
+        long drainDeadline = System.nanoTime() + REQUEST_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        return results;
+    }
+
+    /**
+     * @return an array in which each endpoint appears as often as its weight
+     */
+    private static Endpoint[] weighted(Map<Endpoint, Integer> mix) {
+        List<Endpoint> weighted = new ArrayList<>();
+        for (Map.Entry<Endpoint, Integer> entry : mix.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                weighted.add(entry.getKey());
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("the mix must give at least one endpoint a positive weight");
+        }
+        return weighted.toArray(new Endpoint[0]);
+    }
+
+    private static String text(Map<Endpoint, Stats> results, int rate, int durationSeconds) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Target rate %d req/s for %d s%n", rate, durationSeconds));
+        out.append(String.format("%-30s %8s %9s %7s %7s %9s %9s %9s %9s%n",
+            "endpoint", "count", "req/s", "2xx", "errors", "p50 ms", "p99 ms", "max ms", "svc p99"));
+        for (Map.Entry<Endpoint, Stats> entry : results.entrySet()) {
+            Stats stats = entry.getValue();
+            LatencyHistogram.Snapshot latency = stats.latency.snapshot();
+            LatencyHistogram.Snapshot service = stats.service.snapshot();
+            out.append(String.format("%-30s %8d %9.1f %7d %7d %9.2f %9.2f %9.2f %9.2f%n",
+                entry.getKey().label, latency.getCount(), (double) latency.getCount() / durationSeconds,
+                stats.ok.sum(), stats.errors.sum(),
+                millis(latency.valueAt(0.5)), millis(latency.valueAt(0.99)), millis(latency.getMax()),
+                millis(service.valueAt(0.99))));
+        }
+        return out.toString();
+    }
+
+    private static Map<String, Object> report(Map<Endpoint, Stats> results, int rate, int durationSeconds,
+                                              Map<Endpoint, Integer> mix) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("targetRate", rate);
+        report.put("durationSeconds", durationSeconds);
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        mix.forEach((endpoint, weight) -> weights.put(endpoint.name().toLowerCase(), weight));
+        report.put("mix", weights);
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (Map.Entry<Endpoint, Stats> entry : results.entrySet()) {
+            Stats stats = entry.getValue();
+            LatencyHistogram.Snapshot latency = stats.latency.snapshot();
+            LatencyHistogram.Snapshot service = stats.service.snapshot();
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("count", latency.getCount());
+            endpoint.put("throughput", (double) latency.getCount() / durationSeconds);
+            endpoint.put("ok", stats.ok.sum());
+            endpoint.put("errors", stats.errors.sum());
+            endpoint.put("p50Ms", millis(latency.valueAt(0.5)));
+            endpoint.put("p99Ms", millis(latency.valueAt(0.99)));
+            endpoint.put("maxMs", millis(latency.getMax()));
+            endpoint.put("serviceP50Ms", millis(service.valueAt(0.5)));
+            endpoint.put("serviceP99Ms", millis(service.valueAt(0.99)));
+            endpoints.put(entry.getKey().label, endpoint);
+        }
+        report.put("endpoints", endpoints);
+        return report;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("expected --name value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    /**
+     * @param mix e.g. "get=80,post=20"
+     * @return weight by endpoint, in Endpoint order
+     */
+    private static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("mix entries look like name=weight, got " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(Endpoint.valueOf(pair[0].trim().toUpperCase()), weight);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Latency and outcome counts for one endpoint.
+     */
+    private static class Stats {
+        /**
+         * From when the request was due to when its response arrived
+         */
+        final LatencyHistogram latency = new LatencyHistogram();
+        /**
+         * From when the request was actually sent to when its response arrived
+         */
+        final LatencyHistogram service = new LatencyHistogram();
+        final LongAdder ok = new LongAdder();
+        /**
+         * 5xx responses, timeouts and connection failures; 4xx answers are
+         * expected for some random requests and are not counted
+         */
+        final LongAdder errors = new LongAdder();
+
+        void record(long due, long sent, long now, int status) {
+            latency.record(now - due);
+            service.record(now - sent);
+            if (status >= 200 && status < 300) {
+                ok.increment();
+            } else if (status == 0 || status >= 500) {
+                errors.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package Controller;
+
+import Model.Account;
+import Model.Message;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.javalin.json.JsonMapper;
+
+/**
+ * The one place the API turns objects into JSON and back.
+ *
+ * Building an ObjectMapper means rediscovering every model class by
+ * reflection, so a single mapper is shared and the ObjectReader and
+ * ObjectWriter for each model type are built once up front and exercised
+ * before the first request arrives. Readers and writers are immutable and
+ * safe to share between threads. Plugged in as Javalin's JsonMapper, so
+ * ctx.json() and ctx.bodyAsClass() go through it too.
+ */
+public class JsonCodec implements JsonMapper {
+    /**
+     * Type of a list of messages, as returned by the list endpoints
+     */
+    public static final TypeReference<List<Message>> MESSAGE_LIST = new TypeReference<List<Message>>() {};
+
+    private final ObjectMapper mapper;
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Type, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    private final ObjectReader accountReader;
+    private final ObjectWriter accountWriter;
+    private final ObjectReader messageReader;
+    private final ObjectWriter messageWriter;
+    private final ObjectReader messageListReader;
+    private final ObjectWriter messageListWriter;
+
+    /**
+     * Build the readers and writers for the model types and warm them up.
+     */
+    public JsonCodec() {
+        // the response stream belongs to Javalin, so generators must not close it
+        JsonFactory factory = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        mapper = new ObjectMapper(factory);
+
+        accountReader = register(Account.class, mapper.readerFor(Account.class), mapper.writerFor(Account.class));
+        accountWriter = writers.get(Account.class);
+        messageReader = register(Message.class, mapper.readerFor(Message.class), mapper.writerFor(Message.class));
+        messageWriter = writers.get(Message.class);
+        JavaType messageList = mapper.getTypeFactory().constructType(MESSAGE_LIST);
+        messageListReader = register(messageList, mapper.readerFor(messageList), mapper.writerFor(messageList));
+        messageListWriter = writers.get(messageList);
+        writers.put(MESSAGE_LIST.getType(), messageListWriter);
+        readers.put(MESSAGE_LIST.getType(), messageListReader);
+
+        warmUp();
+    }
+
+    /**
+     * @param account
+     * @return the account as JSON
+     */
+    public String writeAccount(Account account) {
+        return write(accountWriter, account);
+    }
+
+    /**
+     * @param json
+     * @return the account the JSON describes
+     */
+    public Account readAccount(String json) {
+        return read(accountReader, json);
+    }
+
+    /**
+     * @param message
+     * @return the message as JSON
+     */
+    public String writeMessage(Message message) {
+        return write(messageWriter, message);
+    }
+
+    /**
+     * @param message
+     * @return the message as UTF-8 JSON
+     */
+    public byte[] writeMessageBytes(Message message) {
+        try {
+            return messageWriter.writeValueAsBytes(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param json
+     * @return the message the JSON describes
+     */
+    public Message readMessage(String json) {
+        return read(messageReader, json);
+    }
+
+    /**
+     * @param messages
+     * @return the messages as a JSON array
+     */
+    public String writeMessages(List<Message> messages) {
+        return write(messageListWriter, messages);
+    }
+
+    /**
+     * @param json
+     * @return the messages the JSON array describes
+     */
+    public List<Message> readMessages(String json) {
+        return read(messageListReader, json);
+    }
+
+    /**
+     * Serialize an object for Javalin. Strings are assumed to be JSON
+     * already and are passed through untouched, as Javalin's own mapper does.
+     */
+    @Override
+    public String toJsonString(Object obj, Type type) {
+        if (obj instanceof String) {
+            return (String) obj;
+        }
+        return write(writerFor(type), obj);
+    }
+
+    @Override
+    public InputStream toJsonStream(Object obj, Type type) {
+        if (obj instanceof String) {
+            return new ByteArrayInputStream(((String) obj).getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            return new ByteArrayInputStream(writerFor(type).writeValueAsBytes(obj));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJsonString(String json, Type targetType) {
+        return read(readerFor(targetType), json);
+    }
+
+    @Override
+    public <T> T fromJsonStream(InputStream json, Type targetType) {
+        try {
+            return readerFor(targetType).readValue(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ObjectReader register(Type type, ObjectReader reader, ObjectWriter writer) {
+        readers.put(type, reader);
+        writers.put(type, writer);
+        return reader;
+    }
+
+    private ObjectReader readerFor(Type type) {
+        return readers.computeIfAbsent(type, t -> mapper.readerFor(mapper.getTypeFactory().constructType(t)));
+    }
+
+    private ObjectWriter writerFor(Type type) {
+        return writers.computeIfAbsent(type, t -> mapper.writerFor(mapper.getTypeFactory().constructType(t)));
+    }
+
+    private static String write(ObjectWriter writer, Object value) {
+        try {
+            return writer.writeValueAsString(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> T read(ObjectReader reader, String json) {
+        try {
+            return reader.readValue(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Run a round trip of each model type so Jackson builds and caches its
+     * serializers and deserializers now rather than on the first request.
+     */
+    private void warmUp() {
+        Account account = readAccount(writeAccount(new Account(1, "warmup", "password")));
+        Message message = readMessage(writeMessage(new Message(1, account.getAccount_id(), "warmup", 0L)));
+        List<Message> messages = new ArrayList<>();
+        messages.add(message);
+        readMessages(writeMessages(messages));
+        toJsonString(messages, messages.getClass());
+    }
+}
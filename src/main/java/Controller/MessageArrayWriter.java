@@ -0,0 +1,110 @@
+package Controller;
+
+import DAO.MessageConsumer;
+import Model.Message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes messages straight to an output stream as a JSON array, one at a
+ * time as they arrive. Only a small buffer is held in memory, so a response
+ * of any length costs the same heap, and the first bytes go out as soon as
+ * the buffer fills rather than after the whole list is built.
+ *
+ * Each message is copied in from its cached JSON fragment, so a message
+ * that has been listed before costs a byte copy rather than a trip through
+ * Jackson. Writers for full-feed streams leave the fragments they encode
+ * out of the cache.
+ */
+class MessageArrayWriter implements MessageConsumer, AutoCloseable {
+    private final MessageFragments fragments;
+    private final OutputStream out;
+    private final boolean storeFragments;
+    private final byte[] buffer = new byte[8 * 1024];
+    private int position;
+    private boolean empty = true;
+    private boolean written;
+
+    /**
+     * Start a JSON array on the given stream.
+     * @param fragments supplies each message's JSON
+     * @param out
+     * @param storeFragments whether to cache the fragments of messages not yet cached
+     */
+    MessageArrayWriter(MessageFragments fragments, OutputStream out, boolean storeFragments) {
+        this.fragments = fragments;
+        this.out = out;
+        this.storeFragments = storeFragments;
+        buffer[position++] = '[';
+    }
+
+    /**
+     * Append one message to the array.
+     * @param message
+     * @throws IOException
+     */
+    @Override
+    public void accept(Message message) throws IOException {
+        if (!empty) {
+            put((byte) ',');
+        }
+        empty = false;
+        byte[] json = fragments.get(message, storeFragments);
+        if (json.length > buffer.length - position) {
+            flushBuffer();
+            if (json.length > buffer.length) {
+                written = true;
+                out.write(json);
+                return;
+            }
+        }
+        System.arraycopy(json, 0, buffer, position, json.length);
+        position += json.length;
+    }
+
+    /**
+     * Append every message in a list to the array.
+     * @param messages
+     * @throws IOException
+     */
+    void acceptAll(List<Message> messages) throws IOException {
+        for (Message message : messages) {
+            accept(message);
+        }
+    }
+
+    /**
+     * @return true once any bytes have been passed on to the stream, after
+     * which the response can no longer be replaced
+     */
+    boolean hasWritten() {
+        return written;
+    }
+
+    /**
+     * End the array and flush what is left in the buffer. The stream is
+     * left open.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        put((byte) ']');
+        flushBuffer();
+        out.flush();
+    }
+
+    private void put(byte b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = b;
+    }
+
+    private void flushBuffer() throws IOException {
+        written = true;
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+}
@@ -0,0 +1,393 @@
+package Controller;
+
+import Model.Message;
+import Service.MessageListener;
+import Util.ThreadMode;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import io.javalin.http.sse.SseClient;
+import org.eclipse.jetty.server.Request;
+
+/**
+ * Pushes every message created, edited or deleted to Server-Sent Events
+ * subscribers, so clients can follow the feed instead of polling it.
+ *
+ * Writes go into a fixed-size ring of events, each numbered in sequence,
+ * and return at once: a writer never waits on a subscriber. Every
+ * subscriber keeps its own cursor into the ring. A single dispatcher thread
+ * wakes on each write, skips subscribers that have nothing to receive, and
+ * hands the rest to a bounded pool of sender threads, one delivery per
+ * subscriber at a time. Idle subscribers cost a cursor and an open
+ * connection, no thread.
+ *
+ * A subscriber whose cursor falls a whole ring behind has missed events. If
+ * it is between deliveries it is sent a "resync" event, telling it to reload
+ * with GET /messages, and carries on from the newest event; if it is still
+ * stuck writing an earlier delivery, it is disconnected. Writes block, so
+ * every delivery also has a deadline: a client that stops reading is
+ * disconnected once one delivery has run longer than the write timeout,
+ * giving its sender thread back rather than leaving the subscribers behind
+ * it waiting for a free one. Event IDs carry a
+ * random boot ID, so a client reconnecting with Last-Event-ID resumes where
+ * it left off if the ring still holds that point, and is told to resync
+ * otherwise.
+ */
+public class MessageEventStream implements MessageListener {
+    private static final long HEARTBEAT_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    private final JsonCodec codec;
+    private final String bootId = Integer.toHexString(ThreadLocalRandom.current().nextInt());
+    private final Event[] ring;
+    private final int mask;
+    /**
+     * Sequence number of the next event; events before it are in the ring
+     * unless overwritten
+     */
+    private volatile long head;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders;
+    private final Thread dispatcher;
+    private final long writeTimeoutNanos;
+    private volatile boolean running = true;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    /**
+     * @param codec encodes each event's message once
+     * @param capacity events held for subscribers that are behind, rounded up to a power of two
+     * @param senderThreads most deliveries in progress at once
+     * @param writeTimeoutMillis longest one delivery may take before the subscriber is disconnected
+     */
+    public MessageEventStream(JsonCodec codec, int capacity, int senderThreads, long writeTimeoutMillis) {
+        if (capacity < 1 || senderThreads < 1 || writeTimeoutMillis < 1) {
+            throw new IllegalArgumentException(
+                "event stream needs capacity >= 1, senderThreads >= 1 and writeTimeoutMillis >= 1");
+        }
+        this.codec = codec;
+        writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        ring = new Event[size];
+        mask = size - 1;
+        senders = ThreadMode.isVirtual() ? ThreadMode.newTaskExecutor("sse-sender")
+            : Executors.newFixedThreadPool(senderThreads, ThreadMode.threadFactory("sse-sender"));
+        dispatcher = ThreadMode.threadFactory("sse-dispatcher").newThread(this::dispatch);
+        dispatcher.start();
+    }
+
+    /**
+     * Start sending events to a newly connected client.
+     * @param client
+     * @param accountId only send events for this account's messages, or null for all
+     * @param lastEventId the client's Last-Event-ID header, may be null
+     */
+    public void subscribe(SseClient client, Integer accountId, String lastEventId) {
+        client.keepAlive();
+        long now = head;
+        Subscriber subscriber = new Subscriber(client, accountId == null ? 0 : accountId, now);
+        // held until the greeting is written, so the dispatcher cannot write at the same time
+        subscriber.busy.set(true);
+        subscriber.writingSince = System.nanoTime();
+        client.onClose(() -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        try {
+            client.sendComment("connected");
+            if (lastEventId != null) {
+                long resumeFrom = parseEventId(lastEventId) + 1;
+                if (resumeFrom > 0 && resumeFrom <= now && resumeFrom >= now - ring.length) {
+                    subscriber.cursor = resumeFrom;
+                } else {
+                    resync(subscriber, now);
+                }
+            }
+        } finally {
+            subscriber.writingSince = 0;
+            subscriber.busy.set(false);
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    @Override
+    public void onCreate(Message message) {
+        publish("created", message);
+    }
+
+    @Override
+    public void onEdit(Message message) {
+        publish("edited", message);
+    }
+
+    @Override
+    public void onDelete(Message message) {
+        publish("deleted", message);
+    }
+
+    /**
+     * Stop dispatching and disconnect every subscriber.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+        senders.shutdown();
+        for (Subscriber subscriber : subscribers) {
+            disconnect(subscriber);
+        }
+    }
+
+    /**
+     * @return subscribers connected now
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return events written to the ring
+     */
+    public long getPublished() {
+        return published.sum();
+    }
+
+    /**
+     * @return times a subscriber was told to resync
+     */
+    public long getResyncs() {
+        return resyncs.sum();
+    }
+
+    /**
+     * @return subscribers disconnected for falling behind
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return subscribers disconnected for taking longer than the write timeout over one delivery
+     */
+    public long getTimedOut() {
+        return timedOut.sum();
+    }
+
+    private void publish(String type, Message message) {
+        String data = codec.writeMessage(message);
+        synchronized (ring) {
+            long sequence = head;
+            ring[(int) (sequence & mask)] = new Event(sequence, type, message.getPosted_by(), data);
+            head = sequence + 1;
+        }
+        published.increment();
+        LockSupport.unpark(dispatcher);
+    }
+
+    /**
+     * Wake on each write, or every heartbeat interval, and start a delivery
+     * for every subscriber with something to receive. Also wakes often
+     * enough to catch deliveries that have run past the write timeout.
+     */
+    private void dispatch() {
+        long nextHeartbeat = System.nanoTime() + HEARTBEAT_NANOS;
+        long checkNanos = Math.min(HEARTBEAT_NANOS, writeTimeoutNanos);
+        while (running) {
+            LockSupport.parkNanos(this, Math.max(0, Math.min(checkNanos, nextHeartbeat - System.nanoTime())));
+            long now = head;
+            boolean heartbeat = System.nanoTime() - nextHeartbeat >= 0;
+            if (heartbeat) {
+                nextHeartbeat = System.nanoTime() + HEARTBEAT_NANOS;
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.busy.compareAndSet(false, true)) {
+                    long writingSince = subscriber.writingSince;
+                    if (writingSince != 0 && System.nanoTime() - writingSince > writeTimeoutNanos
+                            && subscriber.drop()) {
+                        timedOut.increment();
+                        abort(subscriber);
+                    } else if (subscriber.cursor < now - ring.length && subscriber.drop()) {
+                        dropped.increment();
+                        disconnect(subscriber);
+                    }
+                    continue;
+                }
+                if (!heartbeat && !skipUnwanted(subscriber, now)) {
+                    subscriber.busy.set(false);
+                    continue;
+                }
+                try {
+                    senders.execute(() -> deliver(subscriber, heartbeat));
+                } catch (RuntimeException e) {
+                    subscriber.busy.set(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Move a filtered subscriber's cursor past events it would not be sent.
+     * @return true if the subscriber has an event to be sent
+     */
+    private boolean skipUnwanted(Subscriber subscriber, long now) {
+        long cursor = subscriber.cursor;
+        if (cursor >= now) {
+            return false;
+        }
+        if (subscriber.accountId == 0 || cursor < now - ring.length) {
+            return true;
+        }
+        for (long sequence = cursor; sequence < now; sequence++) {
+            Event event = ring[(int) (sequence & mask)];
+            if (event == null || event.sequence != sequence || event.accountId == subscriber.accountId) {
+                subscriber.cursor = sequence;
+                return true;
+            }
+        }
+        subscriber.cursor = now;
+        return false;
+    }
+
+    /**
+     * Send a subscriber everything from its cursor to the newest event. Runs
+     * on a sender thread while the subscriber is marked busy.
+     */
+    private void deliver(Subscriber subscriber, boolean heartbeat) {
+        subscriber.writingSince = System.nanoTime();
+        try {
+            if (heartbeat) {
+                subscriber.client.sendComment("ping");
+            }
+            long end = head;
+            while (subscriber.cursor < end && !subscriber.dropped.get()) {
+                long sequence = subscriber.cursor;
+                Event event = ring[(int) (sequence & mask)];
+                if (sequence < end - ring.length || event == null || event.sequence != sequence) {
+                    resync(subscriber, head);
+                    break;
+                }
+                if (subscriber.accountId == 0 || event.accountId == subscriber.accountId) {
+                    subscriber.client.sendEvent(event.type, event.data, bootId + "-" + sequence);
+                }
+                subscriber.cursor = sequence + 1;
+            }
+        } catch (RuntimeException e) {
+            disconnect(subscriber);
+        } finally {
+            subscriber.writingSince = 0;
+            subscriber.busy.set(false);
+            if (subscriber.cursor < head) {
+                // an event may have arrived while this subscriber looked busy
+                LockSupport.unpark(dispatcher);
+            }
+        }
+    }
+
+    /**
+     * Close a subscriber's stream. The connection may already be broken,
+     * in which case closing can fail; the subscriber is forgotten either way.
+     */
+    private void disconnect(Subscriber subscriber) {
+        try {
+            subscriber.client.close();
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            subscribers.remove(subscriber);
+        }
+    }
+
+    /**
+     * Cut the connection of a subscriber stuck in a write. Closing the stream
+     * would wait behind that write; aborting fails it, so the sender thread
+     * blocked in it is released at once.
+     */
+    private void abort(Subscriber subscriber) {
+        try {
+            Request.getBaseRequest(subscriber.client.ctx.req()).getHttpChannel()
+                .abort(new IOException("live feed write timed out"));
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            subscribers.remove(subscriber);
+        }
+    }
+
+    private void resync(Subscriber subscriber, long now) {
+        resyncs.increment();
+        subscriber.cursor = now;
+        subscriber.client.sendEvent("resync", "{\"reason\":\"missed events\"}",
+            now > 0 ? bootId + "-" + (now - 1) : null);
+    }
+
+    /**
+     * @return the sequence number in an event ID from this run, or -2 if it is from another run or malformed
+     */
+    private long parseEventId(String eventId) {
+        int dash = eventId.lastIndexOf('-');
+        if (dash < 0 || !eventId.substring(0, dash).equals(bootId)) {
+            return -2;
+        }
+        try {
+            return Long.parseLong(eventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -2;
+        }
+    }
+
+    private static class Event {
+        final long sequence;
+        final String type;
+        final int accountId;
+        final String data;
+
+        Event(long sequence, String type, int accountId, String data) {
+            this.sequence = sequence;
+            this.type = type;
+            this.accountId = accountId;
+            this.data = data;
+        }
+    }
+
+    private static class Subscriber {
+        final SseClient client;
+        /**
+         * Account to filter on, 0 for every account
+         */
+        final int accountId;
+        /**
+         * Sequence number of the next event to consider; changed only by
+         * whoever has set busy
+         */
+        volatile long cursor;
+        /**
+         * Set while the dispatcher or a sender owns the subscriber
+         */
+        final AtomicBoolean busy = new AtomicBoolean();
+        /**
+         * System.nanoTime() when the write in progress began, 0 if none is
+         */
+        volatile long writingSince;
+        final AtomicBoolean dropped = new AtomicBoolean();
+
+        Subscriber(SseClient client, int accountId, long cursor) {
+            this.client = client;
+            this.accountId = accountId;
+            this.cursor = cursor;
+        }
+
+        /**
+         * @return true the first time only
+         */
+        boolean drop() {
+            return dropped.compareAndSet(false, true);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package Controller;
+
+import Model.Message;
+import Service.MessageListener;
+import Util.LruCache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Each message's JSON, encoded once as UTF-8 bytes and kept for the list
+ * endpoints to copy straight into their responses, so a message read many
+ * times is serialized once.
+ *
+ * A fragment remembers the message it was made from and is only used for an
+ * equal message. An edit racing with a read can therefore never serve old
+ * text: the stale fragment simply fails the check and is rebuilt. Edits and
+ * deletes also drop a message's fragment as soon as they commit, so the
+ * space goes to live messages. Full-feed streams use fragments already held
+ * but do not store the ones they encode, so one scan of every message cannot
+ * push out the fragments of the pages being read over and over.
+ */
+public class MessageFragments implements MessageListener {
+    private final JsonCodec codec;
+    private final LruCache<Integer, Fragment> fragments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param codec encodes fragments on a miss
+     * @param maxSize most fragments held
+     */
+    public MessageFragments(JsonCodec codec, int maxSize) {
+        this.codec = codec;
+        this.fragments = new LruCache<>(maxSize, 0, 0);
+    }
+
+    /**
+     * @param message
+     * @return the message as UTF-8 JSON; must not be modified
+     */
+    public byte[] get(Message message) {
+        return get(message, true);
+    }
+
+    /**
+     * @param message
+     * @param store whether to keep a newly encoded fragment; false for scans
+     * that read each message once
+     * @return the message as UTF-8 JSON; must not be modified
+     */
+    public byte[] get(Message message, boolean store) {
+        Integer messageId = message.getMessage_id();
+        Fragment fragment = fragments.getIfPresent(messageId);
+        if (fragment != null && (fragment.message == message || fragment.message.equals(message))) {
+            hits.increment();
+            return fragment.json;
+        }
+        misses.increment();
+        byte[] json = codec.writeMessageBytes(message);
+        if (store) {
+            fragments.put(messageId, new Fragment(message, json));
+        }
+        return json;
+    }
+
+    /**
+     * @return fragments held
+     */
+    public int size() {
+        return fragments.getStats().getSize();
+    }
+
+    /**
+     * @return lookups answered from a stored fragment
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return lookups that had to encode the message
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public void onCreate(Message message) {
+        // encoded when first read, since many new messages are never listed
+    }
+
+    @Override
+    public void onEdit(Message message) {
+        fragments.invalidate(message.getMessage_id());
+    }
+
+    @Override
+    public void onDelete(Message message) {
+        fragments.invalidate(message.getMessage_id());
+    }
+
+    private static class Fragment {
+        final Message message;
+        final byte[] json;
+
+        Fragment(Message message, byte[] json) {
+            this.message = message;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package Controller;
+
+import Model.Message;
+
+import java.util.List;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.Context;
+
+/**
+ * The after_id and limit query params of a keyset-paginated list request.
+ * A page holds the messages with IDs greater than afterId, in ID order, so a
+ * client walks the list by passing the last ID it received as the next
+ * after_id.
+ */
+class PageRequest {
+    final int afterId;
+    final int limit;
+
+    private PageRequest(int afterId, int limit) {
+        this.afterId = afterId;
+        this.limit = limit;
+    }
+
+    /**
+     * Read the page params of a request. Requests that give neither param
+     * are not paged, and get null back.
+     * 
+     * @param ctx
+     * @param defaultLimit limit used when only after_id is given
+     * @return the requested page, or null if the request is not paged
+     * @throws BadRequestResponse if either param is not a valid number
+     */
+    static PageRequest from(Context ctx, int defaultLimit) {
+        String afterId = ctx.queryParam("after_id");
+        String limit = ctx.queryParam("limit");
+        if (afterId == null && limit == null) {
+            return null;
+        }
+        int parsedAfterId = afterId == null ? 0 : parse("after_id", afterId, 0);
+        int parsedLimit = limit == null ? defaultLimit : parse("limit", limit, 1);
+        return new PageRequest(parsedAfterId, parsedLimit);
+    }
+
+    /**
+     * Point the client at the following page with a Link header, unless the
+     * given page came back short and is therefore the last one.
+     * 
+     * @param ctx
+     * @param page messages returned for this request
+     * @param pageSize number of messages a full page holds
+     */
+    static void linkNextPage(Context ctx, List<Message> page, int pageSize) {
+        if (!page.isEmpty() && page.size() >= pageSize) {
+            int lastId = page.get(page.size() - 1).getMessage_id();
+            ctx.header("Link", "<" + ctx.path() + "?after_id=" + lastId + "&limit=" + pageSize + ">; rel=\"next\"");
+        }
+    }
+
+    /**
+     * @param name the query param, for the error message
+     * @param value
+     * @param min
+     * @return the value as a number
+     * @throws BadRequestResponse if it is not a whole number of at least min
+     */
+    static int parse(String name, String value, int min) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed >= min) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the error below
+        }
+        throw new BadRequestResponse(name + " must be a whole number of at least " + min);
+    }
+}
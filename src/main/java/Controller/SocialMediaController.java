@@ -1,26 +1,96 @@
 package Controller;
 
+import DAO.MessageConsumer;
 import Model.Account;
+import Model.AccountStats;
 import Model.Message;
+import Model.MessageBatchResult;
+import Service.AccountDirectory;
 import Service.AccountService;
+import Service.DataVersions;
+import Service.GroupCommitWriter;
+import Service.MessageSearchIndex;
 import Service.MessageService;
+import Util.Bulkhead;
+import Util.ConnectionPool;
+import Util.ConnectionUtil;
+import Util.DatabaseUnavailableException;
+import Util.LruCache;
+import Util.Metrics;
+import Util.MigrationRunner;
+import Util.ThreadMode;
 
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 import io.javalin.Javalin;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ContentType;
 import io.javalin.http.Context;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import io.javalin.http.HttpResponseException;
+import io.javalin.http.HttpStatus;
+import io.javalin.util.ConcurrencyUtil;
+import org.eclipse.jetty.server.Request;
 
 /**
  * Controller for social media blog API
  */
 public class SocialMediaController {
+    /**
+     * Shared by every controller, so Jackson's setup is paid for once per process
+     */
+    private static final JsonCodec JSON = new JsonCodec();
+    /**
+     * Request attribute holding the ETag and Last-Modified worked out by conditional
+     */
+    private static final String VALIDATORS = "socialmedia.validators";
+
     private AccountService accountService;
     private MessageService messageService;
+    /**
+     * Encoded JSON of recently listed messages
+     */
+    private MessageFragments messageFragments;
+    /**
+     * Live feed of message writes for Server-Sent Events subscribers
+     */
+    private MessageEventStream messageEvents;
+
+    /**
+     * Each class of route runs on its own bulkhead, so that, for example, a
+     * burst of full-feed reads cannot hold up logins. The default sizes split
+     * socialmedia.bulkhead.maxRequests between them, and split the connection
+     * pool between them in the same shares, so every class keeps connections
+     * of its own however busy the others are.
+     */
+    private final Bulkhead feedReads = newBulkhead("feed-reads", 0.3);
+    private final Bulkhead pointReads = newBulkhead("point-reads", 0.2);
+    private final Bulkhead writes = newBulkhead("writes", 0.3);
+    private final Bulkhead auth = newBulkhead("auth", 0.2);
 
     public SocialMediaController() {
-        accountService = new AccountService();
-        messageService = new MessageService();
+        MigrationRunner.migrate();
+        AccountDirectory accountDirectory = new AccountDirectory();
+        accountService = new AccountService(accountDirectory);
+        messageService = new MessageService(accountDirectory);
+        messageFragments = new MessageFragments(JSON,
+            Integer.getInteger("socialmedia.cache.fragments.maxSize", 10_000));
+        messageService.addListener(messageFragments);
+        messageEvents = new MessageEventStream(JSON,
+            Integer.getInteger("socialmedia.sse.bufferSize", 4096),
+            Integer.getInteger("socialmedia.sse.senderThreads", Math.max(2, Runtime.getRuntime().availableProcessors())),
+            Long.getLong("socialmedia.sse.writeTimeoutMs", 10_000));
+        messageService.addListener(messageEvents);
     }
     /**
      * In order for the test cases to work, you will need to write the endpoints in the startAPI() method, as the test
@@ -28,21 +98,198 @@ public class SocialMediaController {
      * @return a Javalin app object which defines the behavior of the Javalin controller.
      */
     public Javalin startAPI() {
-        Javalin app = Javalin.create();
+        // Javalin would pick virtual threads for Jetty by itself whenever the JDK has them; make it opt-in
+        ConcurrencyUtil.INSTANCE.setUseLoom(ThreadMode.isVirtual());
+        Javalin app = Javalin.create(config -> {
+            config.jsonMapper(JSON);
+            config.requestLogger.http((ctx, ms) ->
+                Metrics.recordRequest(ctx.method().name(), routeOf(ctx), ctx.statusCode(), (long) (ms * 1_000_000)));
+        });
+        app.exception(RejectedExecutionException.class, (e, ctx) -> {
+            ctx.header("Retry-After", "1");
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE);
+        });
+        app.exception(DatabaseUnavailableException.class, (e, ctx) -> {
+            ctx.header("Retry-After", "1");
+            ctx.status(HttpStatus.SERVICE_UNAVAILABLE);
+        });
+        app.events(event -> event.serverStopping(messageEvents::shutdown));
+        app.events(event -> event.serverStopped(() -> {
+            for (Bulkhead bulkhead : getBulkheads()) {
+                bulkhead.shutdown();
+            }
+            messageService.shutdown();
+        }));
         app.get("example-endpoint", this::exampleHandler);
+        app.get("metrics", this::metricsHandler);
 
-        app.post("register", this::registerHandler);
-        app.post("login", this::loginHandler);
-        app.post("messages", this::postMessageHandler);
-        app.get("messages", this::getAllMessagesHandler);
-        app.get("messages/{message_id}", this::getMessageByIdHandler);
-        app.delete("messages/{message_id}", this::deleteMessageWithIdHandler);
-        app.patch("messages/{message_id}", this::patchMessageWithIdHandler);
-        app.get("accounts/{account_id}/messages", this::getAllMessagesByUserHandler);
+        app.post("register", isolate(auth, this::registerHandler));
+        app.post("login", isolate(auth, this::loginHandler));
+        app.post("messages", isolateAsync(writes, this::postMessageHandler));
+        app.post("messages/batch", isolate(writes, this::postMessageBatchHandler));
+        app.get("messages", conditional(ctx -> null, isolate(feedReads, this::getAllMessagesHandler)));
+        // before messages/{message_id}, which would otherwise take "search" for an ID
+        app.get("messages/search", conditional(ctx -> null, isolate(feedReads, this::searchMessagesHandler)));
+        app.get("messages/{message_id}", isolate(pointReads, this::getMessageByIdHandler));
+        app.delete("messages/{message_id}", isolate(writes, this::deleteMessageWithIdHandler));
+        app.patch("messages/{message_id}", isolate(writes, this::patchMessageWithIdHandler));
+        app.before("events/messages", this::checkEventSubscription);
+        app.sse("events/messages", client -> messageEvents.subscribe(client,
+            accountIdParam(client.ctx), client.ctx.header("Last-Event-ID")));
+        app.get("accounts/{account_id}/messages", conditional(ctx -> Integer.parseInt(ctx.pathParam("account_id")),
+            isolate(feedReads, this::getAllMessagesByUserHandler)));
+        app.get("accounts/{account_id}/stats", conditional(ctx -> Integer.parseInt(ctx.pathParam("account_id")),
+            isolate(pointReads, this::getAccountStatsHandler)));
+        app.get("accounts/top", conditional(ctx -> null, isolate(pointReads, this::getTopAccountsHandler)));
 
         return app;
     }
 
+    /**
+     * @return the bulkheads the routes run on, for reporting how saturated they are
+     */
+    public List<Bulkhead> getBulkheads() {
+        return List.of(feedReads, pointReads, writes, auth);
+    }
+
+    /**
+     * Wrap a handler so it runs as an async future on a bulkhead. If the
+     * bulkhead is full the future fails at once and the client gets a 503.
+     * @param bulkhead
+     * @param handler
+     * @return the wrapped handler
+     */
+    private static Handler isolate(Bulkhead bulkhead, Handler handler) {
+        return ctx -> ctx.future(() -> bulkhead.submit(() -> {
+            handler.handle(ctx);
+            return null;
+        }));
+    }
+
+    /**
+     * Like isolate, for a handler that only starts its work on the bulkhead
+     * and returns a future for the rest. The bulkhead slot is given back as
+     * soon as the handler returns; the response is sent when its future
+     * completes. Whatever the future waits on must bound its own backlog, as
+     * the message writer's queue does for posts.
+     * @param bulkhead
+     * @param handler
+     * @return the wrapped handler
+     */
+    private static Handler isolateAsync(Bulkhead bulkhead, Function<Context, CompletableFuture<Void>> handler) {
+        return ctx -> ctx.future(() -> bulkhead.submit(() -> handler.apply(ctx)).thenCompose(Function.identity()));
+    }
+
+    /**
+     * Wrap a read handler so that it is tagged with the version of the data
+     * it reads. A complete 200 response carries that version's ETag and
+     * Last-Modified headers, and a request whose If-None-Match already names
+     * it gets a 304 at once, without reaching the bulkhead, the database or
+     * the JSON writer. The version is read before the data, so a write
+     * landing in between can only make the tag older than the body, never
+     * newer.
+     * 
+     * The headers are only set by the handler, through tagWithVersion, once
+     * it has the body to send; an error, an empty answer or a 503 from a full
+     * bulkhead must not be cached as that version of the data.
+     * @param accountOf the account whose messages the route reads, or null for all messages
+     * @param handler
+     * @return the wrapped handler
+     */
+    private Handler conditional(Function<Context, Integer> accountOf, Handler handler) {
+        return ctx -> {
+            Integer accountId = accountOf.apply(ctx);
+            DataVersions versions = messageService.getDataVersions();
+            DataVersions.Version version = accountId == null ? versions.global() : versions.forAccount(accountId);
+            String eTag = versions.eTag(accountId == null ? "messages" : "account" + accountId, version);
+            String lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                Instant.ofEpochMilli(version.getModifiedMillis()).atZone(ZoneOffset.UTC));
+            ctx.attribute(VALIDATORS, new String[] {eTag, lastModified});
+            if (matches(ctx.header("If-None-Match"), eTag)) {
+                tagWithVersion(ctx);
+                ctx.status(HttpStatus.NOT_MODIFIED);
+                return;
+            }
+            handler.handle(ctx);
+        };
+    }
+
+    /**
+     * Set the ETag and Last-Modified headers that conditional worked out for
+     * this request. Does nothing on routes that are not conditional.
+     * @param ctx
+     */
+    private static void tagWithVersion(Context ctx) {
+        String[] validators = ctx.attribute(VALIDATORS);
+        if (validators != null) {
+            ctx.header("ETag", validators[0]);
+            ctx.header("Last-Modified", validators[1]);
+        }
+    }
+
+    /**
+     * Take back the headers set by tagWithVersion, while the response has
+     * not been sent yet.
+     * @param ctx
+     */
+    private static void untag(Context ctx) {
+        ctx.res().setHeader("ETag", null);
+        ctx.res().setHeader("Last-Modified", null);
+    }
+
+    /**
+     * @param ifNoneMatch an If-None-Match header, may be null
+     * @param eTag the current strong ETag
+     * @return true if the header lists the tag, weakly or not, or is "*"
+     */
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Size a bulkhead from system properties
+     * socialmedia.bulkhead.{name}.maxConcurrent, .maxQueued and
+     * .maxConnections, by default giving it the stated share of
+     * socialmedia.bulkhead.maxRequests (500 unless set), room for twice as
+     * many waiting requests and the same share of the connection pool.
+     * @param name
+     * @param share fraction of the requests in flight and of the connections to use by default
+     * @return the bulkhead
+     */
+    private static Bulkhead newBulkhead(String name, double share) {
+        int maxRequests = Integer.getInteger("socialmedia.bulkhead.maxRequests", 500);
+        int maxConcurrent = Integer.getInteger("socialmedia.bulkhead." + name + ".maxConcurrent",
+            Math.max(1, (int) Math.round(maxRequests * share)));
+        int maxQueued = Integer.getInteger("socialmedia.bulkhead." + name + ".maxQueued", maxConcurrent * 2);
+        int maxConnections = Integer.getInteger("socialmedia.bulkhead." + name + ".maxConnections",
+            Math.max(1, (int) Math.round(ConnectionUtil.getMaxPoolSize() * share)));
+        return new Bulkhead(name, maxConcurrent, maxQueued, maxConnections);
+    }
+
+    /**
+     * The route template a request matched, for labelling its metrics.
+     * Requests that matched no route share one label, so unknown paths
+     * cannot grow the metrics without bound.
+     * @param ctx
+     * @return e.g. "messages/{message_id}", or "unmatched"
+     */
+    private static String routeOf(Context ctx) {
+        String route = ctx.handlerType() == HandlerType.BEFORE ? "" : ctx.endpointHandlerPath();
+        return route.isEmpty() ? "unmatched" : route;
+    }
+
     /**
      * This is an example handler for an example endpoint.
      * @param context The Javalin Context object manages information about both the HTTP request and response.
@@ -51,6 +298,110 @@ public class SocialMediaController {
         context.json("sample text");
     }
 
+    /**
+     * Handler for the metrics endpoint.
+     * Response body is in the Prometheus text format: request latency by
+     * route and status, query latency and errors by DAO method, and the
+     * current state of the connection pool, message cache and bulkheads.
+     * Runs outside the bulkheads so it still answers when they are full.
+     * 
+     * @param ctx
+     */
+    private void metricsHandler(Context ctx) {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        Metrics.writeTo(out);
+
+        ConnectionPool.Stats pool = ConnectionUtil.getPoolStats();
+        Metrics.header(out, "db_pool_connections", "gauge", "Pooled database connections by state");
+        Metrics.sample(out, "db_pool_connections", "state=\"active\"", pool.getActive());
+        Metrics.sample(out, "db_pool_connections", "state=\"idle\"", pool.getIdle());
+        Metrics.sample(out, "db_pool_connections", "state=\"open\"", pool.getOpen());
+        Metrics.sample(out, "db_pool_connections", "state=\"max\"", pool.getMaxSize());
+        Metrics.header(out, "db_pool_waiting", "gauge", "Threads waiting for a connection");
+        Metrics.sample(out, "db_pool_waiting", "", pool.getWaiting());
+        Metrics.header(out, "db_pool_checkouts_total", "counter", "Connections handed out");
+        Metrics.sample(out, "db_pool_checkouts_total", "", pool.getCheckouts());
+        Metrics.header(out, "db_pool_timeouts_total", "counter", "Checkouts that gave up waiting");
+        Metrics.sample(out, "db_pool_timeouts_total", "", pool.getTimeouts());
+        Metrics.header(out, "db_pool_leaks_total", "counter", "Connections held past the leak threshold");
+        Metrics.sample(out, "db_pool_leaks_total", "", pool.getLeaks());
+        Metrics.header(out, "db_pool_wait_seconds_total", "counter", "Time spent waiting for connections");
+        Metrics.sample(out, "db_pool_wait_seconds_total", "", pool.getTotalWaitMillis() / 1000.0);
+        Metrics.header(out, "db_pool_wait_seconds_max", "gauge", "Longest wait for a connection");
+        Metrics.sample(out, "db_pool_wait_seconds_max", "", pool.getMaxWaitMillis() / 1000.0);
+
+        LruCache.Stats cache = messageService.getMessageCacheStats();
+        Metrics.header(out, "message_cache_size", "gauge", "Entries in the message cache");
+        Metrics.sample(out, "message_cache_size", "", cache.getSize());
+        Metrics.header(out, "message_cache_requests_total", "counter", "Message cache lookups by result");
+        Metrics.sample(out, "message_cache_requests_total", "result=\"hit\"", cache.getHits());
+        Metrics.sample(out, "message_cache_requests_total", "result=\"miss\"", cache.getMisses());
+        Metrics.header(out, "message_cache_evictions_total", "counter", "Entries dropped from the message cache");
+        Metrics.sample(out, "message_cache_evictions_total", "", cache.getEvictions());
+
+        Metrics.header(out, "message_fragment_cache_size", "gauge", "Entries in the message JSON fragment cache");
+        Metrics.sample(out, "message_fragment_cache_size", "", messageFragments.size());
+        Metrics.header(out, "message_fragment_cache_requests_total", "counter",
+            "Message JSON fragment lookups by result");
+        Metrics.sample(out, "message_fragment_cache_requests_total", "result=\"hit\"", messageFragments.getHits());
+        Metrics.sample(out, "message_fragment_cache_requests_total", "result=\"miss\"", messageFragments.getMisses());
+
+        Metrics.header(out, "sse_subscribers", "gauge", "Clients following the live message feed");
+        Metrics.sample(out, "sse_subscribers", "", messageEvents.getSubscriberCount());
+        Metrics.header(out, "sse_events_total", "counter", "Message writes published to the live feed");
+        Metrics.sample(out, "sse_events_total", "", messageEvents.getPublished());
+        Metrics.header(out, "sse_resyncs_total", "counter", "Live feed subscribers told to reload after missing events");
+        Metrics.sample(out, "sse_resyncs_total", "", messageEvents.getResyncs());
+        Metrics.header(out, "sse_dropped_total", "counter", "Live feed subscribers disconnected for falling behind");
+        Metrics.sample(out, "sse_dropped_total", "", messageEvents.getDropped());
+        Metrics.header(out, "sse_timeouts_total", "counter", "Live feed subscribers disconnected for a stalled write");
+        Metrics.sample(out, "sse_timeouts_total", "", messageEvents.getTimedOut());
+
+        GroupCommitWriter writer = messageService.getMessageWriter();
+        Metrics.header(out, "message_write_commits_total", "counter", "Transactions committed by the message writer");
+        Metrics.sample(out, "message_write_commits_total", "", writer.getBatches());
+        Metrics.header(out, "message_write_messages_total", "counter", "Messages inserted by the message writer");
+        Metrics.sample(out, "message_write_messages_total", "", writer.getWritten());
+        Metrics.header(out, "message_write_rejected_total", "counter", "Messages turned away by a full writer queue");
+        Metrics.sample(out, "message_write_rejected_total", "", writer.getRejected());
+        Metrics.header(out, "message_search_words", "gauge", "Distinct words in the message search index");
+        Metrics.sample(out, "message_search_words", "", messageService.getSearchIndex().wordCount());
+
+        Metrics.header(out, "bulkhead_active", "gauge", "Requests running on each bulkhead");
+        for (Bulkhead bulkhead : getBulkheads()) {
+            Metrics.sample(out, "bulkhead_active", "bulkhead=\"" + bulkhead.getName() + "\"",
+                bulkhead.getStats().getActive());
+        }
+        Metrics.header(out, "bulkhead_queued", "gauge", "Requests waiting on each bulkhead");
+        for (Bulkhead bulkhead : getBulkheads()) {
+            Metrics.sample(out, "bulkhead_queued", "bulkhead=\"" + bulkhead.getName() + "\"",
+                bulkhead.getStats().getQueued());
+        }
+        Metrics.header(out, "bulkhead_max_concurrent", "gauge", "Most requests each bulkhead runs at once");
+        for (Bulkhead bulkhead : getBulkheads()) {
+            Metrics.sample(out, "bulkhead_max_concurrent", "bulkhead=\"" + bulkhead.getName() + "\"",
+                bulkhead.getStats().getMaxConcurrent());
+        }
+        Metrics.header(out, "bulkhead_connections", "gauge", "Database connections held by each bulkhead's requests");
+        for (Bulkhead bulkhead : getBulkheads()) {
+            Metrics.sample(out, "bulkhead_connections", "bulkhead=\"" + bulkhead.getName() + "\"",
+                bulkhead.getStats().getConnections());
+        }
+        Metrics.header(out, "bulkhead_max_connections", "gauge", "Most database connections each bulkhead holds at once");
+        for (Bulkhead bulkhead : getBulkheads()) {
+            Metrics.sample(out, "bulkhead_max_connections", "bulkhead=\"" + bulkhead.getName() + "\"",
+                bulkhead.getStats().getMaxConnections());
+        }
+        Metrics.header(out, "bulkhead_rejected_total", "counter", "Requests turned away by each full bulkhead");
+        for (Bulkhead bulkhead : getBulkheads()) {
+            Metrics.sample(out, "bulkhead_rejected_total", "bulkhead=\"" + bulkhead.getName() + "\"",
+                bulkhead.getStats().getRejected());
+        }
+
+        ctx.contentType("text/plain; version=0.0.4; charset=utf-8");
+        ctx.result(out.toString());
+    }
+
     /**
      * Handler for account registration.
      * Register the account represented in the request body.
@@ -58,14 +409,12 @@ public class SocialMediaController {
      * code 200 if successful, or status code 400 otherwise.
      * 
      * @param ctx contains JSON Account in its body
-     * @throws JsonProcessingException
      */
-    private void registerHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Account account = mapper.readValue(ctx.body(), Account.class);
+    private void registerHandler(Context ctx) {
+        Account account = ctx.bodyAsClass(Account.class);
         Account addedAccount = accountService.registerAccount(account);
         if (addedAccount != null) {
-            ctx.json(mapper.writeValueAsString(addedAccount));
+            ctx.json(addedAccount);
         } else {
             ctx.status(400);
         }
@@ -77,14 +426,12 @@ public class SocialMediaController {
      * code 200 if login successful, otherwise gives status code 401.
      * 
      * @param ctx contains JSON Account in its body
-     * @throws JsonProcessingException
      */
-    private void loginHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Account account = mapper.readValue(ctx.body(), Account.class);
+    private void loginHandler(Context ctx) {
+        Account account = ctx.bodyAsClass(Account.class);
         Account foundAccount = accountService.verifyLogin(account);
         if (foundAccount != null) {
-            ctx.json(mapper.writeValueAsString(foundAccount));
+            ctx.json(foundAccount);
         } else {
             ctx.status(401);
         }
@@ -93,33 +440,165 @@ public class SocialMediaController {
     /**
      * Handler for posting a new message.
      * Response body contains the new message in its body with status code 200
-     * if successful, otherwise gives status code 400.
+     * if successful, otherwise gives status code 400. The message is queued
+     * for the message writer and the response sent once its batch commits,
+     * without holding a writes bulkhead slot in the meantime.
      * 
      * @param ctx contains JSON message in its body
-     * @throws JsonProcessingException
-     */
-    private void postMessageHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Message message = mapper.readValue(ctx.body(), Message.class);
-        Message postedMessage = messageService.createMessage(message);
-        if (postedMessage != null) {
-            ctx.json(mapper.writeValueAsString(postedMessage));
-        } else {
+     * @return a future completing once the response is set
+     */
+    private CompletableFuture<Void> postMessageHandler(Context ctx) {
+        Message message = ctx.bodyAsClass(Message.class);
+        return messageService.createMessageAsync(message).thenAccept(postedMessage -> {
+            if (postedMessage != null) {
+                ctx.json(postedMessage);
+            } else {
+                ctx.status(400);
+            }
+        });
+    }
+
+    /**
+     * Handler for posting many messages at once.
+     * Response body contains one result per posted message, in order, each
+     * with its own status: 200 and the created message, or 400 and the reason
+     * it was rejected. The response status is 200 even if some messages were
+     * rejected, or 413 if the batch holds more than MAX_BATCH_SIZE messages.
+     * 
+     * @param ctx contains a JSON array of messages in its body
+     */
+    private void postMessageBatchHandler(Context ctx) {
+        List<Message> messages = ctx.bodyAsClass(JsonCodec.MESSAGE_LIST.getType());
+        if (messages == null) {
             ctx.status(400);
+        } else if (messages.size() > MessageService.MAX_BATCH_SIZE) {
+            ctx.status(413);
+        } else {
+            List<MessageBatchResult> results = messageService.createMessages(messages);
+            ctx.json(results);
         }
     }
 
     /**
      * Handler for retrieving all messages.
      * Response body contains a list of all messages with a status code of 200.
+     * The list is streamed to the client as rows are read from the database.
+     * With "after_id" and/or "limit" query params, only one page of messages
+     * ordered by ID is returned, and a Link header points to the next page.
+     * With "since" and/or "until" query params (epoch seconds), only the
+     * messages posted in that range are returned, ordered by time and paged
+     * with "limit" and the "cursor" given in the Link header.
+     * With an "ids" query param (comma separated message IDs), only those
+     * messages are returned, in the order given; IDs not found are left out.
+     * Every variant is tagged with the global data version, and answered with
+     * a 304 if the client already has it.
      * 
-     * @param ctx
-     * @throws JsonProcessingException
+     * @param ctx may contain "after_id" and "limit", "since", "until", "cursor" and "limit", or "ids", query params
+     * @throws IOException
      */
-    private void getAllMessagesHandler(Context ctx) throws JsonProcessingException {
-        List<Message> messages = messageService.getAllMessages();
+    private void getAllMessagesHandler(Context ctx) throws IOException {
+        String ids = ctx.queryParam("ids");
+        if (ids != null) {
+            List<Message> messages = messageService.getMessagesByIds(parseIds(ids));
+            if (messages != null) {
+                writeMessages(ctx, messages);
+            }
+            return;
+        }
+        TimeRangeRequest range = TimeRangeRequest.from(ctx, MessageService.DEFAULT_PAGE_SIZE);
+        if (range != null) {
+            List<Message> messages = messageService.getMessagesByTime(range.afterTime, range.afterId,
+                range.untilTime(), range.limit);
+            if (messages != null) {
+                range.linkNextPage(ctx, messages, Math.min(range.limit, MessageService.MAX_PAGE_SIZE));
+                writeMessages(ctx, messages);
+            }
+            return;
+        }
+        PageRequest page = PageRequest.from(ctx, MessageService.DEFAULT_PAGE_SIZE);
+        if (page == null) {
+            streamMessages(ctx, messageService::streamAllMessages);
+            return;
+        }
+        List<Message> messages = messageService.getMessagesPage(page.afterId, page.limit);
         if (messages != null) {
-            ctx.json((new ObjectMapper()).writeValueAsString(messages));
+            PageRequest.linkNextPage(ctx, messages, Math.min(page.limit, MessageService.MAX_PAGE_SIZE));
+            writeMessages(ctx, messages);
+        }
+    }
+
+    /**
+     * Handler for searching message text.
+     * Response body contains the messages whose text has every word of the
+     * "q" query param, newest first, with status code 200. Words are runs of
+     * letters and digits, matched regardless of case. At most "limit"
+     * messages are returned (default 20, at most 100); when the page is
+     * full, a Link header points to the next one, which passes the last ID
+     * received as "before_id".
+     * 
+     * @param ctx contains "q" query param, may contain "limit" and "before_id"
+     * @throws BadRequestResponse if q has no words, or limit or before_id is not a valid number
+     * @throws IOException
+     */
+    private void searchMessagesHandler(Context ctx) throws IOException {
+        String query = ctx.queryParam("q");
+        if (query == null || MessageSearchIndex.words(query).isEmpty()) {
+            throw new BadRequestResponse("q must contain at least one word");
+        }
+        String limitParam = ctx.queryParam("limit");
+        String beforeIdParam = ctx.queryParam("before_id");
+        int limit = limitParam == null ? MessageService.DEFAULT_SEARCH_RESULTS : PageRequest.parse("limit", limitParam, 1);
+        int beforeId = beforeIdParam == null ? Integer.MAX_VALUE : PageRequest.parse("before_id", beforeIdParam, 1);
+        limit = Math.min(limit, MessageService.MAX_SEARCH_RESULTS);
+        List<Message> messages = messageService.searchMessages(query, beforeId, limit);
+        if (messages != null) {
+            if (messages.size() == limit) {
+                int lastId = messages.get(messages.size() - 1).getMessage_id();
+                ctx.header("Link", "<" + ctx.path() + "?q=" + URLEncoder.encode(query, StandardCharsets.UTF_8)
+                    + "&before_id=" + lastId + "&limit=" + limit + ">; rel=\"next\"");
+            }
+            writeMessages(ctx, messages);
+        }
+    }
+
+    /**
+     * Checks a request to follow the live feed at GET /events/messages before
+     * it becomes a Server-Sent Events stream, while a plain error status can
+     * still be sent. The stream carries "created", "edited" and "deleted"
+     * events, each with the message as JSON, and "resync" if the client
+     * missed events and should reload the feed.
+     * 
+     * @param ctx must accept text/event-stream; may contain an "account_id"
+     * query param, to follow only that account's messages
+     * @throws HttpResponseException with status 406 if the client does not ask for an event stream
+     * @throws BadRequestResponse if account_id is not a number
+     * @throws RejectedExecutionException if the node already has its maximum number of subscribers
+     */
+    private void checkEventSubscription(Context ctx) {
+        if (!"text/event-stream".equals(ctx.header("Accept"))) {
+            // Javalin only opens the stream for exactly this Accept header
+            throw new HttpResponseException(HttpStatus.NOT_ACCEPTABLE.getCode(), "Accept must be text/event-stream");
+        }
+        accountIdParam(ctx);
+        if (messageEvents.getSubscriberCount() >= Integer.getInteger("socialmedia.sse.maxSubscribers", 50_000)) {
+            throw new RejectedExecutionException("too many live feed subscribers");
+        }
+    }
+
+    /**
+     * @param ctx
+     * @return the "account_id" query param, or null if there is none
+     * @throws BadRequestResponse if it is not a number
+     */
+    private static Integer accountIdParam(Context ctx) {
+        String accountId = ctx.queryParam("account_id");
+        if (accountId == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(accountId);
+        } catch (NumberFormatException e) {
+            throw new BadRequestResponse("account_id must be a number");
         }
     }
 
@@ -128,13 +607,11 @@ public class SocialMediaController {
      * Response body contains a the message if found with status code 200.
      * 
      * @param ctx contains "message_id" path param
-     * @throws JsonProcessingException
      */
-    private void getMessageByIdHandler(Context ctx) throws JsonProcessingException {
+    private void getMessageByIdHandler(Context ctx) {
         Message message = messageService.getMessageById(Integer.parseInt(ctx.pathParam("message_id")));
         if (message != null) {
-            ObjectMapper mapper = new ObjectMapper();
-            ctx.json(mapper.writeValueAsString(message));
+            ctx.json(message);
         }
     }
 
@@ -144,13 +621,11 @@ public class SocialMediaController {
      * status code 200.
      * 
      * @param ctx contains "message_id" path param
-     * @throws JsonProcessingException
      */
-    private void deleteMessageWithIdHandler(Context ctx) throws JsonProcessingException {
+    private void deleteMessageWithIdHandler(Context ctx) {
         Message message = messageService.deleteMessageWithId(Integer.parseInt(ctx.pathParam("message_id")));
         if (message != null) {
-            ObjectMapper mapper = new ObjectMapper();
-            ctx.json(mapper.writeValueAsString(message));
+            ctx.json(message);
         }
     }
 
@@ -160,15 +635,13 @@ public class SocialMediaController {
      * successful, otherwise gives status code 400.
      * 
      * @param ctx contains "message_id" path param and new message test JSON in body
-     * @throws JsonProcessingException
      */
-    private void patchMessageWithIdHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
+    private void patchMessageWithIdHandler(Context ctx) {
         Message message = messageService.editMessageWithId(
             Integer.parseInt(ctx.pathParam("message_id")),
-            mapper.readValue(ctx.body(), Message.class).getMessage_text());
+            ctx.bodyAsClass(Message.class).getMessage_text());
         if (message != null) {
-            ctx.json(mapper.writeValueAsString(message));
+            ctx.json(message);
         } else {
             ctx.status(400);
         }
@@ -177,15 +650,143 @@ public class SocialMediaController {
     /**
      * Handler to retrieve all messages posted by a given user.
      * Response body contains the list of all messages posted by the user with
-     * status code 200.
+     * status code 200, streamed as rows are read from the database.
+     * Accepts the same paging and time range params as GET /messages.
+     * Tagged with the account's data version, so writes to other accounts'
+     * messages do not invalidate it.
      * 
-     * @param ctx contains "account_id" path param
-     * @throws JsonProcessingException
+     * @param ctx contains "account_id" path param, may contain paging query params
+     * @throws IOException
      */
-    private void getAllMessagesByUserHandler(Context ctx) throws JsonProcessingException {
-        List<Message> messages = messageService.getAllMessagesByUser(Integer.parseInt(ctx.pathParam("account_id")));
+    private void getAllMessagesByUserHandler(Context ctx) throws IOException {
+        int accountId = Integer.parseInt(ctx.pathParam("account_id"));
+        TimeRangeRequest range = TimeRangeRequest.from(ctx, MessageService.DEFAULT_PAGE_SIZE);
+        if (range != null) {
+            List<Message> messages = messageService.getMessagesByUserByTime(accountId, range.afterTime,
+                range.afterId, range.untilTime(), range.limit);
+            if (messages != null) {
+                range.linkNextPage(ctx, messages, Math.min(range.limit, MessageService.MAX_PAGE_SIZE));
+                writeMessages(ctx, messages);
+            }
+            return;
+        }
+        PageRequest page = PageRequest.from(ctx, MessageService.DEFAULT_PAGE_SIZE);
+        if (page == null) {
+            streamMessages(ctx, consumer -> messageService.streamAllMessagesByUser(accountId, consumer));
+            return;
+        }
+        List<Message> messages = messageService.getMessagesByUserPage(accountId, page.afterId, page.limit);
         if (messages != null) {
-            ctx.json((new ObjectMapper()).writeValueAsString(messages));
+            PageRequest.linkNextPage(ctx, messages, Math.min(page.limit, MessageService.MAX_PAGE_SIZE));
+            writeMessages(ctx, messages);
+        }
+    }
+
+    /**
+     * Handler to retrieve the posting statistics of a given user.
+     * Response body contains the user's message count, first and last post
+     * times and messages per day, with status code 200; a user with no
+     * messages has a count of 0 and no times. Tagged with the account's data
+     * version, like the user's message list.
+     * 
+     * @param ctx contains "account_id" path param
+     */
+    private void getAccountStatsHandler(Context ctx) {
+        AccountStats stats = messageService.getAccountStats(Integer.parseInt(ctx.pathParam("account_id")));
+        if (stats != null) {
+            tagWithVersion(ctx);
+            ctx.json(stats);
+        }
+    }
+
+    /**
+     * Handler to retrieve the users who have posted the most messages.
+     * Response body contains their statistics, most messages first, with
+     * status code 200.
+     * 
+     * @param ctx may contain "limit" query param (default 10, at most 100)
+     * @throws BadRequestResponse if limit is not a valid number
+     */
+    private void getTopAccountsHandler(Context ctx) {
+        String limit = ctx.queryParam("limit");
+        List<AccountStats> top = messageService.getTopAccounts(
+            limit == null ? MessageService.DEFAULT_TOP_ACCOUNTS : PageRequest.parse("limit", limit, 1));
+        if (top != null) {
+            tagWithVersion(ctx);
+            ctx.json(top);
+        }
+    }
+
+    /**
+     * Parse a comma separated list of message IDs.
+     * @param ids
+     * @return the IDs, in the order given
+     * @throws BadRequestResponse if an ID is not a number or there are more
+     * than MAX_IDS_PER_LOOKUP of them
+     */
+    private static List<Integer> parseIds(String ids) {
+        List<Integer> messageIds = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            if (id.isBlank()) {
+                continue;
+            }
+            if (messageIds.size() == MessageService.MAX_IDS_PER_LOOKUP) {
+                throw new BadRequestResponse("at most " + MessageService.MAX_IDS_PER_LOOKUP + " ids per request");
+            }
+            try {
+                messageIds.add(Integer.parseInt(id.trim()));
+            } catch (NumberFormatException e) {
+                throw new BadRequestResponse("ids must be comma separated message IDs");
+            }
+        }
+        return messageIds;
+    }
+
+    /**
+     * Stream messages to the response body as a JSON array as they are read.
+     * If reading fails before any of the array has been sent, the client
+     * gets a 500 instead. If it fails later, the status line is already out,
+     * so the connection is cut: the client sees a broken response rather
+     * than a 200 with a well-formed but truncated array.
+     * @param ctx
+     * @param source passes each message to the consumer, returning false if reading failed
+     * @throws IOException
+     */
+    private void streamMessages(Context ctx, MessageSource source) throws IOException {
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        // the headers go out with the first bytes of the array, before it is known to be complete
+        tagWithVersion(ctx);
+        MessageArrayWriter writer = new MessageArrayWriter(messageFragments, ctx.outputStream(), false);
+        if (source.streamTo(writer)) {
+            writer.close();
+        } else if (!writer.hasWritten()) {
+            untag(ctx);
+            ctx.status(HttpStatus.INTERNAL_SERVER_ERROR);
+        } else {
+            Request.getBaseRequest(ctx.req()).getHttpChannel()
+                .abort(new IOException("message stream failed part way through"));
+        }
+    }
+
+    /**
+     * A streamed read of messages, such as MessageService.streamAllMessages.
+     */
+    private interface MessageSource {
+        boolean streamTo(MessageConsumer consumer) throws IOException;
+    }
+
+    /**
+     * Write a list of messages to the response body as a JSON array, tagged
+     * with the data version if the route is conditional.
+     * @param ctx
+     * @param messages
+     * @throws IOException
+     */
+    private void writeMessages(Context ctx, List<Message> messages) throws IOException {
+        ctx.contentType(ContentType.APPLICATION_JSON);
+        tagWithVersion(ctx);
+        try (MessageArrayWriter writer = new MessageArrayWriter(messageFragments, ctx.outputStream(), true)) {
+            writer.acceptAll(messages);
         }
     }
 }
\ No newline at end of file
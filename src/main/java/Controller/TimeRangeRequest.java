@@ -0,0 +1,124 @@
+package Controller;
+
+import Model.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.Context;
+
+/**
+ * The since, until, cursor and limit query params of a list request for the
+ * messages posted in a time range. Messages come in order of
+ * time_posted_epoch, ties broken by message ID, and include those posted at
+ * since but not those posted at until. Since messages are not in ID order
+ * here, a page ends with an opaque cursor naming the (time, ID) position of
+ * its last message, which the client passes back for the next page.
+ */
+class TimeRangeRequest {
+    final Long since;
+    final Long until;
+    final long afterTime;
+    final int afterId;
+    final int limit;
+
+    private TimeRangeRequest(Long since, Long until, long afterTime, int afterId, int limit) {
+        this.since = since;
+        this.until = until;
+        this.afterTime = afterTime;
+        this.afterId = afterId;
+        this.limit = limit;
+    }
+
+    /**
+     * Read the time range params of a request. Requests that give neither
+     * since nor until are not time ranged, and get null back.
+     *
+     * @param ctx
+     * @param defaultLimit limit used when none is given
+     * @return the requested range, or null if the request is not time ranged
+     * @throws BadRequestResponse if a param is invalid, or after_id is given as well
+     */
+    static TimeRangeRequest from(Context ctx, int defaultLimit) {
+        String since = ctx.queryParam("since");
+        String until = ctx.queryParam("until");
+        if (since == null && until == null) {
+            return null;
+        }
+        if (ctx.queryParam("after_id") != null) {
+            throw new BadRequestResponse("since and until page with cursor, not after_id");
+        }
+        Long parsedSince = since == null ? null : parseTime("since", since);
+        Long parsedUntil = until == null ? null : parseTime("until", until);
+        String limit = ctx.queryParam("limit");
+        int parsedLimit = limit == null ? defaultLimit : PageRequest.parse("limit", limit, 1);
+        String cursor = ctx.queryParam("cursor");
+        if (cursor == null) {
+            // (since, 0) comes before every message posted at since
+            return new TimeRangeRequest(parsedSince, parsedUntil, parsedSince == null ? Long.MIN_VALUE : parsedSince, 0,
+                parsedLimit);
+        }
+        long[] position = decodeCursor(cursor);
+        return new TimeRangeRequest(parsedSince, parsedUntil, position[0], (int) position[1], parsedLimit);
+    }
+
+    /**
+     * @return the time before which messages are returned
+     */
+    long untilTime() {
+        return until == null ? Long.MAX_VALUE : until;
+    }
+
+    /**
+     * Point the client at the following page with a Link header, unless the
+     * given page came back short and is therefore the last one.
+     *
+     * @param ctx
+     * @param page messages returned for this request
+     * @param pageSize number of messages a full page holds
+     */
+    void linkNextPage(Context ctx, List<Message> page, int pageSize) {
+        if (page.isEmpty() || page.size() < pageSize) {
+            return;
+        }
+        Message last = page.get(page.size() - 1);
+        StringBuilder link = new StringBuilder("<").append(ctx.path()).append('?');
+        if (since != null) {
+            link.append("since=").append(since).append('&');
+        }
+        if (until != null) {
+            link.append("until=").append(until).append('&');
+        }
+        link.append("cursor=").append(encodeCursor(last.getTime_posted_epoch(), last.getMessage_id()))
+            .append("&limit=").append(pageSize).append(">; rel=\"next\"");
+        ctx.header("Link", link.toString());
+    }
+
+    private static String encodeCursor(long time, int messageId) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((time + ":" + messageId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @return the cursor's time and message ID
+     */
+    private static long[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int colon = position.indexOf(':');
+            return new long[] {Long.parseLong(position.substring(0, colon)),
+                Integer.parseInt(position.substring(colon + 1))};
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BadRequestResponse("cursor must be one returned in a Link header");
+        }
+    }
+
+    private static long parseTime(String name, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new BadRequestResponse(name + " must be a time in epoch seconds");
+        }
+    }
+}
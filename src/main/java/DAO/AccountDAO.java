@@ -1,6 +1,7 @@
 package DAO;
 
 import Util.ConnectionUtil;
+import Util.Metrics;
 import Model.Account;
 
 import java.sql.Connection;
@@ -8,15 +9,36 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 
 public class AccountDAO {
     /**
-     * Insert an account into the account table
+     * SQLState H2 reports when an insert breaks a unique constraint
+     */
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    /**
+     * Query timings and failures for each method, published on /metrics
+     */
+    private static final Metrics.Timer INSERT_ACCOUNT = Metrics.timer("AccountDAO.insertAccount");
+    private static final Metrics.Timer USERNAME_AVAILABLE = Metrics.timer("AccountDAO.usernameAvailable");
+    private static final Metrics.Timer GET_ACCOUNT_BY_ID = Metrics.timer("AccountDAO.getAccountById");
+    private static final Metrics.Timer VERIFY_LOGIN = Metrics.timer("AccountDAO.verifyLogin");
+    private static final Metrics.Timer GET_ALL_ACCOUNT_IDS = Metrics.timer("AccountDAO.getAllAccountIds");
+    private static final Metrics.Timer GET_ALL_USERNAMES = Metrics.timer("AccountDAO.getAllUsernames");
+
+    /**
+     * Insert an account into the account table. Relies on the unique
+     * constraint on username to reject duplicates, which is an expected
+     * outcome and is not logged.
      * @param account
-     * @return the given account with generated account ID if successful, else null
+     * @return the given account with generated account ID if successful,
+     * else null (including when the username is taken)
      */
     public Account insertAccount(Account account) {
-        Connection connection = ConnectionUtil.getConnection();
+        Connection connection = ConnectionUtil.getConnection(INSERT_ACCOUNT);
+        long start = System.nanoTime();
         String sql = "INSERT INTO account (username, password) VALUES (?, ?)";
         
         try {
@@ -33,7 +55,13 @@ public class AccountDAO {
                 return new Account(generatedAccountId, account.getUsername(), account.getPassword());
             }
         } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            if (!UNIQUE_VIOLATION.equals(e.getSQLState())) {
+                INSERT_ACCOUNT.failed();
+                System.out.println(e.getMessage());
+            }
+        } finally {
+            INSERT_ACCOUNT.record(start);
+            ConnectionUtil.closeConnection(connection);
         }
         return null;
     }
@@ -47,8 +75,9 @@ public class AccountDAO {
      * @return true if an account exists with the given username
      */
     public boolean usernameAvailable(String username) {
-        Connection connection = ConnectionUtil.getConnection();
-        String checkSql = "SELECT * FROM account WHERE username=?";
+        Connection connection = ConnectionUtil.getConnection(USERNAME_AVAILABLE);
+        long start = System.nanoTime();
+        String checkSql = "SELECT 1 FROM account WHERE username=?";
 
         try {
             PreparedStatement checkPreparedStatement = connection.prepareStatement(checkSql);
@@ -56,7 +85,11 @@ public class AccountDAO {
             ResultSet checkResultSet = checkPreparedStatement.executeQuery();
             return !checkResultSet.next();
         } catch (SQLException e) {
+            USERNAME_AVAILABLE.failed();
             System.out.println(e.getMessage());
+        } finally {
+            USERNAME_AVAILABLE.record(start);
+            ConnectionUtil.closeConnection(connection);
         }
         return false;
     }
@@ -69,7 +102,8 @@ public class AccountDAO {
      * @return account with given account_id if it exists, otherwise null
      */
     public Account getAccountById(int account_id) {
-        Connection connection = ConnectionUtil.getConnection();
+        Connection connection = ConnectionUtil.getConnection(GET_ACCOUNT_BY_ID);
+        long start = System.nanoTime();
         String checkSql = "SELECT * FROM account WHERE account_id=?";
 
         try {
@@ -82,7 +116,11 @@ public class AccountDAO {
                                    resultSet.getString("password"));
             }
         } catch (SQLException e) {
+            GET_ACCOUNT_BY_ID.failed();
             System.out.println(e.getMessage());
+        } finally {
+            GET_ACCOUNT_BY_ID.record(start);
+            ConnectionUtil.closeConnection(connection);
         }
         return null;
     }
@@ -96,7 +134,8 @@ public class AccountDAO {
      * @return account if found, otherwise null
      */
     public Account verifyLogin(Account account) {
-        Connection connection = ConnectionUtil.getConnection();
+        Connection connection = ConnectionUtil.getConnection(VERIFY_LOGIN);
+        long start = System.nanoTime();
         String sql = "SELECT * FROM account WHERE username=? AND password=?";
 
         try {
@@ -110,7 +149,67 @@ public class AccountDAO {
                                    resultSet.getString("password"));
             }
         } catch (SQLException e) {
+            VERIFY_LOGIN.failed();
+            System.out.println(e.getMessage());
+        } finally {
+            VERIFY_LOGIN.record(start);
+            ConnectionUtil.closeConnection(connection);
+        }
+        return null;
+    }
+
+    /**
+     * Provides the IDs of every registered account
+     * 
+     * @return list of account IDs, or null in case of exception
+     */
+    public List<Integer> getAllAccountIds() {
+        Connection connection = ConnectionUtil.getConnection(GET_ALL_ACCOUNT_IDS);
+        long start = System.nanoTime();
+        String sql = "SELECT account_id FROM account";
+
+        try {
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery(sql);
+            List<Integer> accountIds = new ArrayList<>();
+            while (resultSet.next()) {
+                accountIds.add(resultSet.getInt("account_id"));
+            }
+            return accountIds;
+        } catch (SQLException e) {
+            GET_ALL_ACCOUNT_IDS.failed();
+            System.out.println(e.getMessage());
+        } finally {
+            GET_ALL_ACCOUNT_IDS.record(start);
+            ConnectionUtil.closeConnection(connection);
+        }
+        return null;
+    }
+
+    /**
+     * Provides the usernames of every registered account
+     * 
+     * @return list of usernames, or null in case of exception
+     */
+    public List<String> getAllUsernames() {
+        Connection connection = ConnectionUtil.getConnection(GET_ALL_USERNAMES);
+        long start = System.nanoTime();
+        String sql = "SELECT username FROM account";
+
+        try {
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery(sql);
+            List<String> usernames = new ArrayList<>();
+            while (resultSet.next()) {
+                usernames.add(resultSet.getString("username"));
+            }
+            return usernames;
+        } catch (SQLException e) {
+            GET_ALL_USERNAMES.failed();
             System.out.println(e.getMessage());
+        } finally {
+            GET_ALL_USERNAMES.record(start);
+            ConnectionUtil.closeConnection(connection);
         }
         return null;
     }
@@ -0,0 +1,345 @@
+package DAO;
+
+import Model.Message;
+import Util.StripedIntMap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Keeps every message in memory, so reads never leave the process.
+ *
+ * Messages live in a lock-striped, open-addressing table keyed by ID, and
+ * each user's message IDs in a sorted list of ints. Reads take no shared
+ * lock. Writes are serialized: each is appended to a write-ahead log first
+ * and only then applied in memory, so the log replays to exactly the state
+ * readers saw. The log is replayed on startup. Whenever edits and deletes
+ * have left it mostly superseded records, on startup or after a write, it
+ * is rewritten with just the live messages, so it stays within a constant
+ * factor of the data and recovery time stays bounded.
+ *
+ * IDs are handed out in increasing order and never reused, so the whole
+ * feed is read by walking IDs from 1 to the highest one given out. Deleted
+ * IDs are skipped along the way.
+ *
+ * Accounts stay in the database; callers check that posted_by exists.
+ */
+public class InMemoryMessageStore implements MessageStore, Closeable {
+    private static final int STRIPES = 64;
+
+    private final StripedIntMap<Message> messages = new StripedIntMap<>(STRIPES);
+    private final StripedIntMap<IdList> messageIdsByUser = new StripedIntMap<>(STRIPES);
+    private final MessageLog log;
+    /**
+     * Held by every write, so log order and in-memory order agree
+     */
+    private final Object writeLock = new Object();
+    /**
+     * Highest ID given out; written only under writeLock, after the message is visible
+     */
+    private volatile int highestId;
+
+    /**
+     * Open the store, replaying its log.
+     * @param logPath the write-ahead log file
+     * @param fsync whether each write is forced to disk before it returns
+     * @param bootstrap if the log does not exist yet, every message in this
+     * store is copied in first, e.g. the JDBC store when switching over;
+     * may be null
+     * @throws UncheckedIOException if the log cannot be read or written
+     */
+    public InMemoryMessageStore(Path logPath, boolean fsync, MessageStore bootstrap) {
+        try {
+            boolean newLog = !Files.exists(logPath) || Files.size(logPath) == 0;
+            log = new MessageLog(logPath, fsync);
+            long records = log.replay(this::apply, messageId -> {
+                forget(messageId);
+                // a deleted ID still counts as given out
+                highestId = Math.max(highestId, messageId);
+            });
+            if (newLog && bootstrap != null) {
+                List<Message> existing = bootstrap.getAllMessages();
+                if (existing != null && !existing.isEmpty()) {
+                    // one small record per message, since a single record of the whole table could
+                    // outgrow what replay accepts
+                    log.rewrite(existing);
+                    existing.forEach(this::apply);
+                }
+            } else if (isMostlySuperseded(records)) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open message log " + logPath, e);
+        }
+    }
+
+    @Override
+    public Message insertMessage(Message message) {
+        synchronized (writeLock) {
+            Message inserted = new Message(highestId + 1, message.getPosted_by(), message.getMessage_text(),
+                                           message.getTime_posted_epoch());
+            try {
+                log.appendPut(inserted);
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                return null;
+            }
+            apply(inserted);
+            return inserted;
+        }
+    }
+
+    @Override
+    public List<Message> insertMessages(List<Message> messages) {
+        synchronized (writeLock) {
+            List<Message> inserted = new ArrayList<>(messages.size());
+            int messageId = highestId;
+            for (Message message : messages) {
+                inserted.add(new Message(++messageId, message.getPosted_by(), message.getMessage_text(),
+                                         message.getTime_posted_epoch()));
+            }
+            if (inserted.isEmpty()) {
+                return inserted;
+            }
+            try {
+                log.appendPuts(inserted);
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                return null;
+            }
+            inserted.forEach(this::apply);
+            return inserted;
+        }
+    }
+
+    @Override
+    public List<Message> getAllMessages() {
+        return getMessagesAfter(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Message getMessageById(int message_id) {
+        return messages.get(message_id);
+    }
+
+    @Override
+    public List<Message> getMessagesByIds(Collection<Integer> message_ids) {
+        List<Message> found = new ArrayList<>(message_ids.size());
+        for (int messageId : message_ids) {
+            Message message = messages.get(messageId);
+            if (message != null) {
+                found.add(message);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Message deleteMessageWithId(int message_id) {
+        synchronized (writeLock) {
+            Message message = messages.get(message_id);
+            if (message == null) {
+                return null;
+            }
+            try {
+                log.appendDelete(message_id);
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                return null;
+            }
+            forget(message_id);
+            compactIfSuperseded();
+            return message;
+        }
+    }
+
+    @Override
+    public Message editMessageWithId(int message_id, String message_text) {
+        synchronized (writeLock) {
+            Message message = messages.get(message_id);
+            if (message == null) {
+                return null;
+            }
+            Message edited = new Message(message_id, message.getPosted_by(), message_text,
+                                         message.getTime_posted_epoch());
+            try {
+                log.appendPut(edited);
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+                return null;
+            }
+            messages.put(message_id, edited);
+            compactIfSuperseded();
+            return message;
+        }
+    }
+
+    @Override
+    public List<Message> getAllMessagesByUser(int posted_by) {
+        return getMessagesByUserAfter(posted_by, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Message> getMessagesAfter(int afterId, int limit) {
+        List<Message> page = new ArrayList<>(Math.min(limit, 1024));
+        int last = highestId;
+        if (afterId >= last) {
+            return page;
+        }
+        for (int messageId = Math.max(afterId, 0); messageId < last && page.size() < limit; ) {
+            Message message = messages.get(++messageId);
+            if (message != null) {
+                page.add(message);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public List<Message> getMessagesByUserAfter(int posted_by, int afterId, int limit) {
+        IdList ids = messageIdsByUser.get(posted_by);
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        int[] messageIds = ids.after(afterId, limit);
+        List<Message> page = new ArrayList<>(messageIds.length);
+        for (int messageId : messageIds) {
+            Message message = messages.get(messageId);
+            if (message != null) {
+                page.add(message);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public boolean streamAllMessages(MessageConsumer consumer) throws IOException {
+        int last = highestId;
+        for (int messageId = 1; messageId <= last; messageId++) {
+            Message message = messages.get(messageId);
+            if (message != null) {
+                consumer.accept(message);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean streamMessagesByUser(int posted_by, MessageConsumer consumer) throws IOException {
+        for (Message message : getAllMessagesByUser(posted_by)) {
+            consumer.accept(message);
+        }
+        return true;
+    }
+
+    /**
+     * Close the log. The store must not be written to afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            log.close();
+        }
+    }
+
+    /**
+     * Make an inserted or edited message visible. Runs under writeLock, or
+     * during replay before the store is shared.
+     */
+    private boolean isMostlySuperseded(long records) {
+        return records > 2L * messages.size() + 1000;
+    }
+
+    /**
+     * Compact the log if edits and deletes have left it mostly superseded.
+     * Called under writeLock after a write has been applied; the write
+     * already stands if compacting fails.
+     */
+    private void compactIfSuperseded() {
+        if (isMostlySuperseded(log.records())) {
+            try {
+                compact();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        List<Message> live = new ArrayList<>(messages.size());
+        messages.forEachValue(live::add);
+        log.rewrite(live);
+        if (messages.get(highestId) == null) {
+            // keep the highest ID given out on record, so it is never handed out again
+            log.appendDelete(highestId);
+        }
+    }
+
+    private void apply(Message message) {
+        int messageId = message.getMessage_id();
+        if (messages.put(messageId, message) == null) {
+            messageIdsByUser.computeIfAbsent(message.getPosted_by(), key -> new IdList()).add(messageId);
+        }
+        if (messageId > highestId) {
+            highestId = messageId;
+        }
+    }
+
+    private void forget(int messageId) {
+        Message removed = messages.remove(messageId);
+        if (removed != null) {
+            IdList ids = messageIdsByUser.get(removed.getPosted_by());
+            if (ids != null) {
+                ids.remove(messageId);
+            }
+        }
+    }
+
+    /**
+     * One user's message IDs, kept sorted. New IDs are the highest yet, so
+     * adds are appends in practice.
+     */
+    private static class IdList {
+        private int[] ids = new int[4];
+        private int size;
+
+        synchronized void add(int messageId) {
+            int index = Arrays.binarySearch(ids, 0, size, messageId);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = messageId;
+            size++;
+        }
+
+        synchronized void remove(int messageId) {
+            int index = Arrays.binarySearch(ids, 0, size, messageId);
+            if (index >= 0) {
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+
+        /**
+         * @return up to limit IDs greater than afterId, in order
+         */
+        synchronized int[] after(int afterId, int limit) {
+            int from = Arrays.binarySearch(ids, 0, size, afterId);
+            from = from >= 0 ? from + 1 : -from - 1;
+            int to = (int) Math.min(size, (long) from + limit);
+            return Arrays.copyOfRange(ids, from, to);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package DAO;
+
+import Model.Message;
+
+import java.io.IOException;
+
+/**
+ * Receives messages one at a time as they are read from the database, so
+ * a caller can handle a large result without holding all of it in memory.
+ */
+@FunctionalInterface
+public interface MessageConsumer {
+    /**
+     * @param message the next message read
+     * @throws IOException if the consumer could not write the message out;
+     * reading stops and the exception is passed on to the caller
+     */
+    void accept(Message message) throws IOException;
+}
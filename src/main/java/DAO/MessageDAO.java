@@ -1,8 +1,10 @@
 package DAO;
 
 import Util.ConnectionUtil;
+import Util.Metrics;
 import Model.Message;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -10,16 +12,35 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Collection;
 
-public class MessageDAO {
+public class MessageDAO implements MessageStore {
     /**
-     * Insert an account into the account table
+     * Query timings and failures for each method, published on /metrics
+     */
+    private static final Metrics.Timer INSERT_MESSAGE = Metrics.timer("MessageDAO.insertMessage");
+    private static final Metrics.Timer INSERT_MESSAGES = Metrics.timer("MessageDAO.insertMessages");
+    private static final Metrics.Timer GET_ALL_MESSAGES = Metrics.timer("MessageDAO.getAllMessages");
+    private static final Metrics.Timer GET_MESSAGE_BY_ID = Metrics.timer("MessageDAO.getMessageById");
+    private static final Metrics.Timer GET_MESSAGES_BY_IDS = Metrics.timer("MessageDAO.getMessagesByIds");
+    private static final Metrics.Timer DELETE_MESSAGE_WITH_ID = Metrics.timer("MessageDAO.deleteMessageWithId");
+    private static final Metrics.Timer EDIT_MESSAGE_WITH_ID = Metrics.timer("MessageDAO.editMessageWithId");
+    private static final Metrics.Timer GET_ALL_MESSAGES_BY_USER = Metrics.timer("MessageDAO.getAllMessagesByUser");
+    private static final Metrics.Timer GET_MESSAGES_AFTER = Metrics.timer("MessageDAO.getMessagesAfter");
+    private static final Metrics.Timer GET_MESSAGES_BY_USER_AFTER = Metrics.timer("MessageDAO.getMessagesByUserAfter");
+    private static final Metrics.Timer STREAM_ALL_MESSAGES = Metrics.timer("MessageDAO.streamAllMessages");
+    private static final Metrics.Timer STREAM_MESSAGES_BY_USER = Metrics.timer("MessageDAO.streamMessagesByUser");
+
+    /**
+     * Insert a message into the message table
      * 
-     * @param account
-     * @return the given account with generated account ID if successful, else null
+     * @param message
+     * @return the given message with generated message ID if successful, else null
      */
+    @Override
     public Message insertMessage(Message message) {
-        Connection connection = ConnectionUtil.getConnection();
+        Connection connection = ConnectionUtil.getConnection(INSERT_MESSAGE);
+        long start = System.nanoTime();
         String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
         
         try {
@@ -37,7 +58,65 @@ public class MessageDAO {
                 return new Message(generatedMessageId, message.getPosted_by(), message.getMessage_text(), message.getTime_posted_epoch());
             }
         } catch (SQLException e) {
+            INSERT_MESSAGE.failed();
+            System.out.println(e.getMessage());
+        } finally {
+            INSERT_MESSAGE.record(start);
+            ConnectionUtil.closeConnection(connection);
+        }
+        return null;
+    }
+
+    /**
+     * Insert many messages in one transaction, sending them to the database
+     * as a single JDBC batch. Either every message is inserted or none is.
+     * 
+     * @param messages
+     * @return the given messages with their generated IDs, in the same order,
+     * or null if the batch failed and was rolled back
+     */
+    @Override
+    public List<Message> insertMessages(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Connection connection = ConnectionUtil.getConnection(INSERT_MESSAGES);
+        long start = System.nanoTime();
+        String sql = "INSERT INTO message (posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?)";
+
+        try {
+            connection.setAutoCommit(false);
+            PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            for (Message message : messages) {
+                preparedStatement.setInt(1, message.getPosted_by());
+                preparedStatement.setString(2, message.getMessage_text());
+                preparedStatement.setLong(3, message.getTime_posted_epoch());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+
+            List<Message> inserted = new ArrayList<>(messages.size());
+            ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys();
+            for (Message message : messages) {
+                if (!pkeyResultSet.next()) {
+                    throw new SQLException("Batch insert returned fewer keys than rows");
+                }
+                inserted.add(new Message(pkeyResultSet.getInt(1), message.getPosted_by(),
+                                         message.getMessage_text(), message.getTime_posted_epoch()));
+            }
+            connection.commit();
+            return inserted;
+        } catch (SQLException e) {
+            INSERT_MESSAGES.failed();
             System.out.println(e.getMessage());
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackException) {
+                System.out.println(rollbackException.getMessage());
+            }
+        } finally {
+            INSERT_MESSAGES.record(start);
+            ConnectionUtil.closeConnection(connection);
         }
         return null;
     }
@@ -47,9 +126,11 @@ public class MessageDAO {
      * 
      * @return list of messages, or null in case of failure
      */
+    @Override
     public List<Message> getAllMessages() {
-        Connection connection = ConnectionUtil.getConnection();
-        String sql = "SELECT * FROM message";
+        Connection connection = ConnectionUtil.getConnection(GET_ALL_MESSAGES);
+        long start = System.nanoTime();
+        String sql = "SELECT * FROM message ORDER BY message_id";
 
         try {
             Statement statement = connection.createStatement();
@@ -63,7 +144,11 @@ public class MessageDAO {
             }
             return messages;
         } catch (SQLException e) {
+            GET_ALL_MESSAGES.failed();
             System.out.println(e.getMessage());
+        } finally {
+            GET_ALL_MESSAGES.record(start);
+            ConnectionUtil.closeConnection(connection);
         }
         return null;
     }
@@ -74,8 +159,10 @@ public class MessageDAO {
      * @param message_id
      * @return message with ID if present, else null
      */
+    @Override
     public Message getMessageById(int message_id) {
-        Connection connection = ConnectionUtil.getConnection();
+        Connection connection = ConnectionUtil.getConnection(GET_MESSAGE_BY_ID);
+        long start = System.nanoTime();
         String sql = "SELECT * FROM message WHERE message_id=?";
 
         try {
@@ -89,55 +176,104 @@ public class MessageDAO {
                                    resultSet.getLong("time_posted_epoch"));
             }
         } catch (SQLException e) {
+            GET_MESSAGE_BY_ID.failed();
+            System.out.println(e.getMessage());
+        } finally {
+            GET_MESSAGE_BY_ID.record(start);
+            ConnectionUtil.closeConnection(connection);
+        }
+        return null;
+    }
+
+    /**
+     * Provides every message whose ID is in the given collection, using one
+     * query with the IDs bound as a single array parameter.
+     * 
+     * @param message_ids
+     * @return the messages found, in no particular order, or null in case of exception
+     */
+    @Override
+    public List<Message> getMessagesByIds(Collection<Integer> message_ids) {
+        if (message_ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Connection connection = ConnectionUtil.getConnection(GET_MESSAGES_BY_IDS);
+        long start = System.nanoTime();
+        String sql = "SELECT * FROM message WHERE message_id = ANY(?)";
+
+        try {
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setArray(1, connection.createArrayOf("INTEGER", message_ids.toArray()));
+            return readMessages(preparedStatement.executeQuery());
+        } catch (SQLException e) {
+            GET_MESSAGES_BY_IDS.failed();
             System.out.println(e.getMessage());
+        } finally {
+            GET_MESSAGES_BY_IDS.record(start);
+            ConnectionUtil.closeConnection(connection);
         }
         return null;
     }
 
     /**
-     * Delete the message with the given ID. Returns true if the operation
-     * executes without error, or false otherwise.
+     * Delete the message with the given ID, returning the row as it was
+     * before the delete. Uses H2's OLD TABLE data change delta table, so the
+     * delete and the read are one atomic statement.
      * 
      * @param message_id
-     * @return true if no executed successfully, false in case of exception
+     * @return the deleted message, or null if there was none or in case of exception
      */
-    public boolean deleteMessageWithId(int message_id) {
-        Connection connection = ConnectionUtil.getConnection();
-        String sql = "DELETE FROM message WHERE message_id=?";
+    @Override
+    public Message deleteMessageWithId(int message_id) {
+        Connection connection = ConnectionUtil.getConnection(DELETE_MESSAGE_WITH_ID);
+        long start = System.nanoTime();
+        String sql = "SELECT * FROM OLD TABLE (DELETE FROM message WHERE message_id=?)";
 
         try {
             PreparedStatement preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setInt(1, message_id);
-            preparedStatement.executeUpdate();
-            return true;
+            List<Message> deleted = readMessages(preparedStatement.executeQuery());
+            return deleted.isEmpty() ? null : deleted.get(0);
         } catch (SQLException e) {
+            DELETE_MESSAGE_WITH_ID.failed();
             System.out.println(e.getMessage());
+        } finally {
+            DELETE_MESSAGE_WITH_ID.record(start);
+            ConnectionUtil.closeConnection(connection);
         }
-        return false;
+        return null;
     }
 
     /**
-     * Patch the message with the given ID to have the given message text.
-     * Returns true if the SQL executes successfully, false otherwise.
+     * Patch the message with the given ID to have the given message text,
+     * returning the row as it was before the update. Uses H2's OLD TABLE data
+     * change delta table, so the update and the read are one atomic statement;
+     * the row after the update is the same with the new text.
      * 
      * @param message_id
      * @param message_text
-     * @return true in case of successful execution, false in case of exception
+     * @return the message before the edit, or null if there was none or in case of exception
      */
-    public boolean editMessageWithId(int message_id, String message_text) {
-        Connection connection = ConnectionUtil.getConnection();
-        String sql = "UPDATE message SET message_text=? WHERE message_id=?";
+    @Override
+    public Message editMessageWithId(int message_id, String message_text) {
+        Connection connection = ConnectionUtil.getConnection(EDIT_MESSAGE_WITH_ID);
+        long start = System.nanoTime();
+        String sql = "SELECT * FROM OLD TABLE (UPDATE message SET message_text=? WHERE message_id=?)";
 
         try {
             PreparedStatement preparedStatement = connection.prepareStatement(sql);
             preparedStatement.setString(1, message_text);
             preparedStatement.setInt(2, message_id);
-            preparedStatement.executeUpdate();
-            return true;
+            List<Message> edited = readMessages(preparedStatement.executeQuery());
+            return edited.isEmpty() ? null : edited.get(0);
         } catch (SQLException e) {
+            EDIT_MESSAGE_WITH_ID.failed();
             System.out.println(e.getMessage());
+        } finally {
+            EDIT_MESSAGE_WITH_ID.record(start);
+            ConnectionUtil.closeConnection(connection);
         }
-        return false;
+        return null;
     }
 
     /**
@@ -145,9 +281,11 @@ public class MessageDAO {
      * @param posted_by
      * @return list of messages, or null in case of exception
      */
+    @Override
     public List<Message> getAllMessagesByUser(int posted_by) {
-        Connection connection = ConnectionUtil.getConnection();
-        String sql = "SELECT * FROM message WHERE posted_by=?";
+        Connection connection = ConnectionUtil.getConnection(GET_ALL_MESSAGES_BY_USER);
+        long start = System.nanoTime();
+        String sql = "SELECT * FROM message WHERE posted_by=? ORDER BY message_id";
 
         try {
             PreparedStatement preparedStatement = connection.prepareStatement(sql);
@@ -162,8 +300,171 @@ public class MessageDAO {
             }
             return messages;
         } catch (SQLException e) {
+            GET_ALL_MESSAGES_BY_USER.failed();
+            System.out.println(e.getMessage());
+        } finally {
+            GET_ALL_MESSAGES_BY_USER.record(start);
+            ConnectionUtil.closeConnection(connection);
+        }
+        return null;
+    }
+
+    /**
+     * Provides one page of messages ordered by message ID, starting after the
+     * given ID. Seeks straight to afterId on the primary key, so every page
+     * costs the same no matter how deep it is.
+     * 
+     * @param afterId only messages with a greater ID are returned, 0 for the first page
+     * @param limit maximum number of messages to return
+     * @return list of at most limit messages, or null in case of exception
+     */
+    @Override
+    public List<Message> getMessagesAfter(int afterId, int limit) {
+        Connection connection = ConnectionUtil.getConnection(GET_MESSAGES_AFTER);
+        long start = System.nanoTime();
+        String sql = "SELECT * FROM message WHERE message_id>? ORDER BY message_id LIMIT ?";
+
+        try {
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setInt(1, afterId);
+            preparedStatement.setInt(2, limit);
+            return readMessages(preparedStatement.executeQuery());
+        } catch (SQLException e) {
+            GET_MESSAGES_AFTER.failed();
             System.out.println(e.getMessage());
+        } finally {
+            GET_MESSAGES_AFTER.record(start);
+            ConnectionUtil.closeConnection(connection);
         }
         return null;
     }
+
+    /**
+     * Provides one page of the messages posted by a user, ordered by message
+     * ID and starting after the given ID.
+     * 
+     * @param posted_by
+     * @param afterId only messages with a greater ID are returned, 0 for the first page
+     * @param limit maximum number of messages to return
+     * @return list of at most limit messages, or null in case of exception
+     */
+    @Override
+    public List<Message> getMessagesByUserAfter(int posted_by, int afterId, int limit) {
+        Connection connection = ConnectionUtil.getConnection(GET_MESSAGES_BY_USER_AFTER);
+        long start = System.nanoTime();
+        String sql = "SELECT * FROM message WHERE posted_by=? AND message_id>? ORDER BY message_id LIMIT ?";
+
+        try {
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setInt(1, posted_by);
+            preparedStatement.setInt(2, afterId);
+            preparedStatement.setInt(3, limit);
+            return readMessages(preparedStatement.executeQuery());
+        } catch (SQLException e) {
+            GET_MESSAGES_BY_USER_AFTER.failed();
+            System.out.println(e.getMessage());
+        } finally {
+            GET_MESSAGES_BY_USER_AFTER.record(start);
+            ConnectionUtil.closeConnection(connection);
+        }
+        return null;
+    }
+
+    /**
+     * Read every remaining row of a result set into a list of messages
+     * @param resultSet
+     * @return list of messages
+     * @throws SQLException
+     */
+    private List<Message> readMessages(ResultSet resultSet) throws SQLException {
+        List<Message> messages = new ArrayList<>();
+        while (resultSet.next()) {
+            messages.add(new Message(resultSet.getInt("message_id"),
+                                     resultSet.getInt("posted_by"),
+                                     resultSet.getString("message_text"),
+                                     resultSet.getLong("time_posted_epoch")));
+        }
+        return messages;
+    }
+
+    /**
+     * Pass every message in the database to the consumer in message ID order,
+     * one row at a time. Rows are produced lazily by H2 rather than
+     * materialized up front, so memory use does not grow with the table.
+     * 
+     * @param consumer
+     * @return true if every row was read, false in case of database failure
+     * @throws IOException if the consumer fails
+     */
+    @Override
+    public boolean streamAllMessages(MessageConsumer consumer) throws IOException {
+        Connection connection = ConnectionUtil.getConnection(STREAM_ALL_MESSAGES);
+        long start = System.nanoTime();
+        String sql = "SELECT * FROM message ORDER BY message_id";
+
+        try {
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            streamMessages(connection, preparedStatement, consumer);
+            return true;
+        } catch (SQLException e) {
+            STREAM_ALL_MESSAGES.failed();
+            System.out.println(e.getMessage());
+        } finally {
+            STREAM_ALL_MESSAGES.record(start);
+            ConnectionUtil.closeConnection(connection);
+        }
+        return false;
+    }
+
+    /**
+     * Pass every message posted by a user to the consumer in message ID
+     * order, one row at a time.
+     * 
+     * @param posted_by
+     * @param consumer
+     * @return true if every row was read, false in case of database failure
+     * @throws IOException if the consumer fails
+     */
+    @Override
+    public boolean streamMessagesByUser(int posted_by, MessageConsumer consumer) throws IOException {
+        Connection connection = ConnectionUtil.getConnection(STREAM_MESSAGES_BY_USER);
+        long start = System.nanoTime();
+        String sql = "SELECT * FROM message WHERE posted_by=? ORDER BY message_id";
+
+        try {
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setInt(1, posted_by);
+            streamMessages(connection, preparedStatement, consumer);
+            return true;
+        } catch (SQLException e) {
+            STREAM_MESSAGES_BY_USER.failed();
+            System.out.println(e.getMessage());
+        } finally {
+            STREAM_MESSAGES_BY_USER.record(start);
+            ConnectionUtil.closeConnection(connection);
+        }
+        return false;
+    }
+
+    /**
+     * Run a query with lazy execution switched on for the session, handing
+     * each row to the consumer as soon as H2 produces it. Lazy execution is
+     * switched back off before the connection returns to the pool.
+     */
+    private void streamMessages(Connection connection, PreparedStatement preparedStatement,
+                                MessageConsumer consumer) throws SQLException, IOException {
+        Statement session = connection.createStatement();
+        session.execute("SET LAZY_QUERY_EXECUTION TRUE");
+        try {
+            ResultSet resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                consumer.accept(new Message(resultSet.getInt("message_id"),
+                                            resultSet.getInt("posted_by"),
+                                            resultSet.getString("message_text"),
+                                            resultSet.getLong("time_posted_epoch")));
+            }
+        } finally {
+            session.execute("SET LAZY_QUERY_EXECUTION FALSE");
+        }
+    }
 }
@@ -0,0 +1,318 @@
+package DAO;
+
+import Model.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of message changes, replayed to rebuild
+ * InMemoryMessageStore on startup.
+ *
+ * Each record is [payload length: int][CRC32 of payload: int][payload].
+ * A payload is PUT (type, message_id, posted_by, time_posted_epoch, text
+ * length, UTF-8 text), which covers inserts and edits; PUT_ALL (type, count,
+ * then that many messages laid out as in PUT), which keeps a batch insert
+ * all-or-nothing; or DELETE (type, message_id). A record cut short or
+ * failing its checksum marks the
+ * end of the log: it can only be the tail of a write that never finished,
+ * so replay truncates the file there.
+ *
+ * Records reach the operating system before a change is made visible. With
+ * fsync on they are also forced to disk, which survives power loss but makes
+ * every write wait for the device.
+ */
+class MessageLog implements Closeable {
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte PUT_ALL = 3;
+    private static final int HEADER_BYTES = 8;
+    /**
+     * Encoded message without its text: ID, poster, time and text length
+     */
+    private static final int MESSAGE_FIELD_BYTES = 4 + 4 + 8 + 2;
+    /**
+     * Largest encoded message: 255 four-byte characters of text
+     */
+    private static final int MAX_MESSAGE_BYTES = MESSAGE_FIELD_BYTES + 255 * 4;
+    /**
+     * Size of the append buffer between writes; a larger batch gets a
+     * buffer of its own, which is not kept
+     */
+    private static final int BUFFER_BYTES = 64 * 1024;
+    /**
+     * Lengths above this can only come from a corrupt header
+     */
+    private static final int MAX_PAYLOAD_BYTES = 64 * 1024 * 1024;
+
+    private final Path path;
+    private final boolean fsync;
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private long records;
+
+    /**
+     * @param path the log file, created if missing
+     * @param fsync whether every append is forced to disk before returning
+     */
+    MessageLog(Path path, boolean fsync) throws IOException {
+        this.path = path;
+        this.fsync = fsync;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Read every record from the start, then position the log for appending
+     * after the last good one.
+     * @param onPut called for each inserted or edited message, oldest first
+     * @param onDelete called with the ID of each deleted message
+     * @return the number of records read
+     */
+    synchronized long replay(Consumer<Message> onPut, IntConsumer onDelete) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        ByteBuffer payload = ByteBuffer.allocate(1 + MAX_MESSAGE_BYTES);
+        CRC32 crc = new CRC32();
+        long position = 0;
+        long count = 0;
+        long size = channel.size();
+        while (position + HEADER_BYTES <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || length > MAX_PAYLOAD_BYTES || position + HEADER_BYTES + length > size) {
+                break;
+            }
+            if (length > payload.capacity()) {
+                payload = ByteBuffer.allocate(length);
+            }
+            payload.clear().limit(length);
+            channel.read(payload, position + HEADER_BYTES);
+            payload.flip();
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            byte type = payload.get();
+            if (type == PUT) {
+                onPut.accept(readMessage(payload));
+            } else if (type == PUT_ALL) {
+                for (int i = payload.getInt(); i > 0; i--) {
+                    onPut.accept(readMessage(payload));
+                }
+            } else if (type == DELETE) {
+                onDelete.accept(payload.getInt());
+            } else {
+                break;
+            }
+            position += HEADER_BYTES + length;
+            count++;
+        }
+        if (position < size) {
+            System.out.println("Message log " + path + " ends in a partial record; truncating "
+                + (size - position) + " bytes");
+            channel.truncate(position);
+        }
+        channel.position(position);
+        records = count;
+        return count;
+    }
+
+    /**
+     * Append a message as inserted or edited.
+     * @param message
+     */
+    synchronized void appendPut(Message message) throws IOException {
+        buffer.clear();
+        putRecord(message);
+        write();
+    }
+
+    /**
+     * Append several inserted messages as one record, so that replay sees
+     * either all of them or none. The batch must encode to no more than
+     * MAX_PAYLOAD_BYTES, the most replay accepts.
+     * @param messages
+     */
+    synchronized void appendPuts(List<Message> messages) throws IOException {
+        byte[][] texts = new byte[messages.size()][];
+        long length = 1 + 4;
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = messages.get(i).getMessage_text().getBytes(StandardCharsets.UTF_8);
+            length += MESSAGE_FIELD_BYTES + texts[i].length;
+        }
+        if (length > MAX_PAYLOAD_BYTES) {
+            throw new IOException("batch of " + messages.size() + " messages is too large for one log record");
+        }
+        ensureCapacity(HEADER_BYTES + (int) length);
+        buffer.clear();
+        int start = buffer.position();
+        buffer.position(start + HEADER_BYTES);
+        buffer.put(PUT_ALL).putInt(messages.size());
+        for (int i = 0; i < texts.length; i++) {
+            putMessage(messages.get(i), texts[i]);
+        }
+        finishRecord(start);
+        write();
+    }
+
+    /**
+     * Append the deletion of a message.
+     * @param messageId
+     */
+    synchronized void appendDelete(int messageId) throws IOException {
+        buffer.clear();
+        int start = buffer.position();
+        buffer.position(start + HEADER_BYTES);
+        buffer.put(DELETE).putInt(messageId);
+        finishRecord(start);
+        write();
+    }
+
+    /**
+     * @return records in the log, live or superseded
+     */
+    synchronized long records() {
+        return records;
+    }
+
+    /**
+     * Replace the log with one holding a single PUT per live message. The new
+     * log is written beside the old one and renamed over it, so a crash part
+     * way leaves the old log in place. Records are small and written through
+     * the append buffer, however many messages there are, so this is also
+     * how a new log is seeded with an existing table.
+     * @param live every current message
+     */
+    synchronized void rewrite(Iterable<Message> live) throws IOException {
+        Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+        long count = 0;
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.clear();
+            for (Message message : live) {
+                if (buffer.remaining() < HEADER_BYTES + 1 + MAX_MESSAGE_BYTES) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                putRecord(message);
+                count++;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        records = count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void putRecord(Message message) {
+        int start = buffer.position();
+        buffer.position(start + HEADER_BYTES);
+        buffer.put(PUT);
+        putMessage(message);
+        finishRecord(start);
+    }
+
+    private void putMessage(Message message) {
+        putMessage(message, message.getMessage_text().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void putMessage(Message message, byte[] text) {
+        buffer.putInt(message.getMessage_id())
+            .putInt(message.getPosted_by())
+            .putLong(message.getTime_posted_epoch())
+            .putShort((short) text.length)
+            .put(text);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocate(bytes);
+        }
+    }
+
+    /**
+     * Fill in the length and checksum of the record whose payload has just
+     * been written after the header slot at start.
+     */
+    private void finishRecord(int start) {
+        int end = buffer.position();
+        int length = end - start - HEADER_BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start + HEADER_BYTES, length);
+        buffer.putInt(start, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        records++;
+    }
+
+    /**
+     * Write out the buffer. If that fails part way, cut the file back so the
+     * next append does not land behind a torn record, where replay would
+     * never reach it.
+     */
+    private void write() throws IOException {
+        long start = channel.position();
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException truncateException) {
+                e.addSuppressed(truncateException);
+            }
+            throw e;
+        } finally {
+            if (buffer.capacity() > BUFFER_BYTES) {
+                buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            }
+        }
+    }
+
+    private static Message readMessage(ByteBuffer payload) {
+        int messageId = payload.getInt();
+        int postedBy = payload.getInt();
+        long timePostedEpoch = payload.getLong();
+        byte[] text = new byte[payload.getShort() & 0xFFFF];
+        payload.get(text);
+        return new Message(messageId, postedBy, new String(text, StandardCharsets.UTF_8), timePostedEpoch);
+    }
+}
@@ -0,0 +1,99 @@
+package DAO;
+
+import Model.Message;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Where messages are kept. MessageDAO keeps them in the H2 database;
+ * InMemoryMessageStore keeps them in memory, backed by a write-ahead log.
+ * MessageStores.configured() picks one from the socialmedia.store property.
+ *
+ * Methods report failure the way the DAOs always have: by returning null
+ * (or false), after logging the cause.
+ */
+public interface MessageStore {
+    /**
+     * @param message
+     * @return the given message with its assigned ID, or null on failure
+     */
+    Message insertMessage(Message message);
+
+    /**
+     * Insert many messages as one unit: either all are stored or none is.
+     * @param messages
+     * @return the given messages with their IDs, in the same order, or null on failure
+     */
+    List<Message> insertMessages(List<Message> messages);
+
+    /**
+     * @return every message ordered by ID, or null on failure
+     */
+    List<Message> getAllMessages();
+
+    /**
+     * @param message_id
+     * @return the message, or null if there is none
+     */
+    Message getMessageById(int message_id);
+
+    /**
+     * @param message_ids
+     * @return the messages found, in no particular order, or null on failure
+     */
+    List<Message> getMessagesByIds(Collection<Integer> message_ids);
+
+    /**
+     * @param message_id
+     * @return the message as it was before being deleted, or null if there was none
+     */
+    Message deleteMessageWithId(int message_id);
+
+    /**
+     * @param message_id
+     * @param message_text
+     * @return the message as it was before the edit, so callers know both
+     * texts, or null if there was none
+     */
+    Message editMessageWithId(int message_id, String message_text);
+
+    /**
+     * @param posted_by
+     * @return the user's messages ordered by ID, or null on failure
+     */
+    List<Message> getAllMessagesByUser(int posted_by);
+
+    /**
+     * @param afterId only messages with a greater ID are returned
+     * @param limit most messages to return
+     * @return messages ordered by ID, or null on failure
+     */
+    List<Message> getMessagesAfter(int afterId, int limit);
+
+    /**
+     * @param posted_by
+     * @param afterId only messages with a greater ID are returned
+     * @param limit most messages to return
+     * @return the user's messages ordered by ID, or null on failure
+     */
+    List<Message> getMessagesByUserAfter(int posted_by, int afterId, int limit);
+
+    /**
+     * Pass every message to the consumer in ID order without collecting them first.
+     * @param consumer
+     * @return true if every message was passed on, false on failure
+     * @throws IOException if the consumer fails
+     */
+    boolean streamAllMessages(MessageConsumer consumer) throws IOException;
+
+    /**
+     * Pass every message posted by a user to the consumer in ID order.
+     * @param posted_by
+     * @param consumer
+     * @return true if every message was passed on, false on failure
+     * @throws IOException if the consumer fails
+     */
+    boolean streamMessagesByUser(int posted_by, MessageConsumer consumer) throws IOException;
+}
@@ -0,0 +1,54 @@
+package DAO;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Chooses the message store from the socialmedia.store system property:
+ * "jdbc" (the default) for MessageDAO, or "memory" for InMemoryMessageStore.
+ *
+ * The memory store owns its log file, so one instance is shared by every
+ * caller in the process. Its log lives at socialmedia.store.wal.path
+ * (./h2/messages.wal by default) and is forced to disk on every write only
+ * if socialmedia.store.wal.fsync is true.
+ */
+public class MessageStores {
+    private static InMemoryMessageStore memoryStore;
+
+    /**
+     * @return the configured message store
+     * @throws IllegalArgumentException if socialmedia.store names no known store
+     */
+    public static synchronized MessageStore configured() {
+        String store = System.getProperty("socialmedia.store", "jdbc");
+        switch (store) {
+            case "jdbc":
+                return new MessageDAO();
+            case "memory":
+                if (memoryStore == null) {
+                    Path logPath = Paths.get(System.getProperty("socialmedia.store.wal.path", "./h2/messages.wal"));
+                    memoryStore = new InMemoryMessageStore(logPath,
+                        Boolean.getBoolean("socialmedia.store.wal.fsync"), new MessageDAO());
+                }
+                return memoryStore;
+            default:
+                throw new IllegalArgumentException("socialmedia.store must be jdbc or memory, not " + store);
+        }
+    }
+
+    /**
+     * Close the shared memory store, if one is open, so the next call to
+     * configured() opens it afresh from its log.
+     */
+    public static synchronized void closeMemoryStore() {
+        if (memoryStore != null) {
+            try {
+                memoryStore.close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+            memoryStore = null;
+        }
+    }
+}
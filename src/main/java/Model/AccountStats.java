@@ -0,0 +1,122 @@
+package Model;
+
+/**
+ * This is a class that models the posting statistics of one account.
+ */
+public class AccountStats {
+    /**
+     * The account the statistics are for.
+     */
+    public int account_id;
+    /**
+     * How many messages the account has posted and not deleted.
+     */
+    public long message_count;
+    /**
+     * The earliest time_posted_epoch of those messages, or null if there are none.
+     */
+    public Long first_posted_epoch;
+    /**
+     * The latest time_posted_epoch of those messages, or null if there are none.
+     */
+    public Long last_posted_epoch;
+    /**
+     * Messages per day between the first and last post, counting a span shorter than a day as one day.
+     */
+    public double messages_per_day;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public AccountStats(){
+    }
+    /**
+     * @param account_id
+     * @param message_count
+     * @param first_posted_epoch
+     * @param last_posted_epoch
+     * @param messages_per_day
+     */
+    public AccountStats(int account_id, long message_count, Long first_posted_epoch, Long last_posted_epoch,
+            double messages_per_day) {
+        this.account_id = account_id;
+        this.message_count = message_count;
+        this.first_posted_epoch = first_posted_epoch;
+        this.last_posted_epoch = last_posted_epoch;
+        this.messages_per_day = messages_per_day;
+    }
+    /**
+     * @return account_id
+     */
+    public int getAccount_id() {
+        return account_id;
+    }
+    /**
+     * @param account_id
+     */
+    public void setAccount_id(int account_id) {
+        this.account_id = account_id;
+    }
+    /**
+     * @return message_count
+     */
+    public long getMessage_count() {
+        return message_count;
+    }
+    /**
+     * @param message_count
+     */
+    public void setMessage_count(long message_count) {
+        this.message_count = message_count;
+    }
+    /**
+     * @return first_posted_epoch
+     */
+    public Long getFirst_posted_epoch() {
+        return first_posted_epoch;
+    }
+    /**
+     * @param first_posted_epoch
+     */
+    public void setFirst_posted_epoch(Long first_posted_epoch) {
+        this.first_posted_epoch = first_posted_epoch;
+    }
+    /**
+     * @return last_posted_epoch
+     */
+    public Long getLast_posted_epoch() {
+        return last_posted_epoch;
+    }
+    /**
+     * @param last_posted_epoch
+     */
+    public void setLast_posted_epoch(Long last_posted_epoch) {
+        this.last_posted_epoch = last_posted_epoch;
+    }
+    /**
+     * @return messages_per_day
+     */
+    public double getMessages_per_day() {
+        return messages_per_day;
+    }
+    /**
+     * @param messages_per_day
+     */
+    public void setMessages_per_day(double messages_per_day) {
+        this.messages_per_day = messages_per_day;
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "AccountStats{" +
+                "account_id=" + account_id +
+                ", message_count=" + message_count +
+                ", first_posted_epoch=" + first_posted_epoch +
+                ", last_posted_epoch=" + last_posted_epoch +
+                ", messages_per_day=" + messages_per_day +
+                '}';
+    }
+}
@@ -0,0 +1,120 @@
+package Model;
+
+/**
+ * This is a class that models the outcome of one message in a batch post.
+ */
+public class MessageBatchResult {
+    /**
+     * Position of the message in the posted batch, starting at 0.
+     */
+    public int index;
+    /**
+     * HTTP-style status for this message: 200 if it was created, 400 if it failed validation, or 500 if the
+     * database rejected the batch.
+     */
+    public int status;
+    /**
+     * The created message with its generated message_id, or null if it was not created.
+     */
+    public Message message;
+    /**
+     * Why the message was not created, or null if it was.
+     */
+    public String error;
+    /**
+     * A default, no-args constructor, as well as correctly formatted getters and setters, are needed for
+     * Jackson Objectmapper to work.
+     */
+    public MessageBatchResult(){
+    }
+    /**
+     * @param index
+     * @param status
+     * @param message
+     * @param error
+     */
+    public MessageBatchResult(int index, int status, Message message, String error) {
+        this.index = index;
+        this.status = status;
+        this.message = message;
+        this.error = error;
+    }
+    /**
+     * @param index position of the message in the batch
+     * @param message the created message
+     * @return a successful result
+     */
+    public static MessageBatchResult created(int index, Message message) {
+        return new MessageBatchResult(index, 200, message, null);
+    }
+    /**
+     * @param index position of the message in the batch
+     * @param status
+     * @param error
+     * @return a failed result
+     */
+    public static MessageBatchResult failed(int index, int status, String error) {
+        return new MessageBatchResult(index, status, null, error);
+    }
+    /**
+     * @return index
+     */
+    public int getIndex() {
+        return index;
+    }
+    /**
+     * @param index
+     */
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    /**
+     * @return status
+     */
+    public int getStatus() {
+        return status;
+    }
+    /**
+     * @param status
+     */
+    public void setStatus(int status) {
+        this.status = status;
+    }
+    /**
+     * @return message
+     */
+    public Message getMessage() {
+        return message;
+    }
+    /**
+     * @param message
+     */
+    public void setMessage(Message message) {
+        this.message = message;
+    }
+    /**
+     * @return error
+     */
+    public String getError() {
+        return error;
+    }
+    /**
+     * @param error
+     */
+    public void setError(String error) {
+        this.error = error;
+    }
+    /**
+     * Overriding the default toString() method allows for easy debugging.
+     * @return a String representation of this class.
+     */
+    @Override
+    public String toString() {
+        return "MessageBatchResult{" +
+                "index=" + index +
+                ", status=" + status +
+                ", message=" + message +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,69 @@
+package Service;
+
+import DAO.AccountDAO;
+import Util.ConcurrentBitSet;
+
+import java.util.List;
+
+/**
+ * An in-memory record of which account IDs exist, so that checks such as
+ * "is posted_by a real account?" usually need no query.
+ *
+ * The set is seeded with every account ID when it is built and told about
+ * each account registered through AccountService afterwards. Accounts are
+ * never deleted, so an ID in the set is known to exist. An ID not in the set
+ * may still have been added behind the service's back, so that case is
+ * checked against the database, and remembered if the account turns out to
+ * exist.
+ */
+public class AccountDirectory {
+    private AccountDAO accountDAO;
+    private ConcurrentBitSet knownAccountIds;
+
+    public AccountDirectory() {
+        this(new AccountDAO());
+    }
+
+    /**
+     * Build the directory, loading every existing account ID.
+     * @param accountDAO
+     */
+    public AccountDirectory(AccountDAO accountDAO) {
+        this.accountDAO = accountDAO;
+        knownAccountIds = new ConcurrentBitSet();
+        List<Integer> accountIds = accountDAO.getAllAccountIds();
+        if (accountIds != null) {
+            for (int accountId : accountIds) {
+                knownAccountIds.set(accountId);
+            }
+        }
+    }
+
+    /**
+     * Return whether an account with the given ID exists. Answers from
+     * memory when the ID is known, otherwise asks the database.
+     * @param accountId
+     * @return true if the account exists
+     */
+    public boolean exists(int accountId) {
+        if (accountId <= 0) {
+            return false;
+        }
+        if (knownAccountIds.get(accountId)) {
+            return true;
+        }
+        if (accountDAO.getAccountById(accountId) != null) {
+            knownAccountIds.set(accountId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Record a newly registered account.
+     * @param accountId
+     */
+    public void add(int accountId) {
+        knownAccountIds.set(accountId);
+    }
+}
@@ -2,6 +2,7 @@ package Service;
 
 import Model.Account;
 import DAO.AccountDAO;
+import Util.BloomFilter;
 
 import java.util.List;
 
@@ -17,24 +18,58 @@ import java.util.List;
  */
 public class AccountService {
     private AccountDAO accountDAO;
+    private AccountDirectory accountDirectory;
+    /**
+     * Every username known to be taken. A miss means the username is free as
+     * far as this process knows, so registration goes straight to the insert.
+     */
+    private BloomFilter takenUsernames;
 
     public AccountService(){
+        this(new AccountDirectory());
+    }
+
+    /**
+     * @param accountDirectory told about every account this service registers
+     */
+    public AccountService(AccountDirectory accountDirectory) {
         accountDAO = new AccountDAO();
+        this.accountDirectory = accountDirectory;
+
+        List<String> usernames = accountDAO.getAllUsernames();
+        int existing = usernames == null ? 0 : usernames.size();
+        takenUsernames = new BloomFilter(
+            Math.max(Integer.getInteger("socialmedia.bloom.usernames.expected", 100_000), existing * 2),
+            0.01);
+        if (usernames != null) {
+            for (String username : usernames) {
+                takenUsernames.add(username);
+            }
+        }
     }
 
     /**
-     * Register a new account
+     * Register a new account. The insert itself enforces unique usernames,
+     * so a free username costs one round trip and two concurrent signups for
+     * the same name cannot both succeed. Usernames the Bloom filter has seen
+     * are checked first, so obvious duplicates never attempt the insert.
      * @param account
      * @return the given account with its generated ID if registration successful, else null
      */
     public Account registerAccount(Account account) {
-        if (!account.getUsername().isEmpty() 
-            && account.getPassword().length() >= 4
-            && accountDAO.usernameAvailable(account.getUsername())) {
-            return accountDAO.insertAccount(account);
-        } else {  // fail and return null if conditions not met
+        if (account.getUsername().isEmpty() || account.getPassword().length() < 4) {
+            return null;  // fail and return null if conditions not met
+        }
+        if (takenUsernames.mightContain(account.getUsername())
+            && !accountDAO.usernameAvailable(account.getUsername())) {
             return null;
         }
+        Account inserted = accountDAO.insertAccount(account);
+        if (inserted != null) {
+            takenUsernames.add(inserted.getUsername());
+            accountDirectory.add(inserted.getAccount_id());
+        }
+        return inserted;
     }
 
     public Account verifyLogin(Account account) {
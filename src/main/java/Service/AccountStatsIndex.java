@@ -0,0 +1,88 @@
+package Service;
+
+import Model.AccountStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-account posting statistics, read from the posted_by index so that
+ * reading them does not mean reading the account's messages.
+ *
+ * The posted_by index is the only record of who posted what: an account's
+ * message count is the size of its timeline, and its first and last post
+ * times are the two ends of it, which stay correct when the first or last
+ * message is deleted. Reading one account's statistics is therefore a
+ * single lookup, and there are no separate counters to drift from the
+ * timelines.
+ *
+ * The top accounts are not kept in order. Each call to top() walks every
+ * account's count once, keeping a heap of the requested size, so it costs
+ * time in proportion to the number of accounts that have posted; the
+ * /accounts/top route answers repeat requests for an unchanged feed with a
+ * 304 before it gets here.
+ */
+public class AccountStatsIndex {
+    private static final double SECONDS_PER_DAY = TimeUnit.DAYS.toSeconds(1);
+
+    private final PostedByIndex postedByIndex;
+
+    /**
+     * @param postedByIndex source of each account's messages
+     */
+    public AccountStatsIndex(PostedByIndex postedByIndex) {
+        this.postedByIndex = postedByIndex;
+    }
+
+    /**
+     * @param accountId
+     * @return the account's statistics; an account with no messages has a count of 0
+     */
+    public AccountStats get(int accountId) {
+        long[] summary = postedByIndex.summary(accountId);
+        if (summary == null) {
+            return new AccountStats(accountId, 0, null, null, 0);
+        }
+        long count = summary[0];
+        double days = Math.max(1, (summary[2] - summary[1]) / SECONDS_PER_DAY);
+        return new AccountStats(accountId, count, summary[1], summary[2], count / days);
+    }
+
+    /**
+     * Find the accounts with the most messages with one pass over every
+     * account that has posted.
+     * @param limit most accounts to return
+     * @return the accounts with the most messages, most first, ties by account ID
+     */
+    public List<AccountStats> top(int limit) {
+        if (limit < 1) {
+            return new ArrayList<>();
+        }
+        Comparator<long[]> order = Comparator.<long[]>comparingLong(entry -> entry[1])
+            .thenComparingLong(entry -> -entry[0]);
+        // the least of the best so far is at the head, ready to be replaced
+        PriorityQueue<long[]> best = new PriorityQueue<>(order);
+        postedByIndex.forEachCount((accountId, count) -> {
+            long[] entry = {accountId, count};
+            if (best.size() < limit) {
+                best.add(entry);
+            } else if (order.compare(entry, best.peek()) > 0) {
+                best.poll();
+                best.add(entry);
+            }
+        });
+        List<AccountStats> top = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            AccountStats stats = get((int) best.poll()[0]);
+            if (stats.getMessage_count() > 0) {
+                top.add(stats);
+            }
+        }
+        Collections.reverse(top);
+        return top;
+    }
+}
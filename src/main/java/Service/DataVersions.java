@@ -0,0 +1,92 @@
+package Service;
+
+import Util.StripedIntMap;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Version numbers for the message data, bumped on every write, so a client
+ * that already has the current data can be told so without reading it again.
+ *
+ * One counter numbers every write. The global version is the number of the
+ * latest write, and an account's version the number of the latest write to
+ * one of its messages, so neither ever goes backwards. Versions restart with
+ * the process; a random boot ID in every ETag keeps one run's tags from
+ * matching another's.
+ */
+public class DataVersions {
+    private final String bootId = Integer.toHexString(ThreadLocalRandom.current().nextInt());
+    private final AtomicLong writes = new AtomicLong();
+    private final Version initial = new Version(0, System.currentTimeMillis());
+    private final AtomicReference<Version> global = new AtomicReference<>(initial);
+    private final StripedIntMap<AtomicReference<Version>> byAccount = new StripedIntMap<>(64);
+
+    /**
+     * Record a write to one of an account's messages. Call once the write is
+     * visible to readers.
+     * @param accountId the message's poster
+     */
+    public void bump(int accountId) {
+        Version version = new Version(writes.incrementAndGet(), System.currentTimeMillis());
+        advance(global, version);
+        advance(byAccount.computeIfAbsent(accountId, key -> new AtomicReference<>(initial)), version);
+    }
+
+    /**
+     * @return the version of all messages
+     */
+    public Version global() {
+        return global.get();
+    }
+
+    /**
+     * @param accountId
+     * @return the version of the messages posted by the account
+     */
+    public Version forAccount(int accountId) {
+        AtomicReference<Version> version = byAccount.get(accountId);
+        return version == null ? initial : version.get();
+    }
+
+    /**
+     * @param scope what the version covers, so tags of different resources differ
+     * @param version
+     * @return a strong ETag, quotes included
+     */
+    public String eTag(String scope, Version version) {
+        return "\"" + bootId + "-" + scope + "-" + version.getNumber() + "\"";
+    }
+
+    private static void advance(AtomicReference<Version> current, Version next) {
+        current.accumulateAndGet(next, (a, b) -> a.getNumber() >= b.getNumber() ? a : b);
+    }
+
+    /**
+     * A write number and when it happened.
+     */
+    public static class Version {
+        private final long number;
+        private final long modifiedMillis;
+
+        Version(long number, long modifiedMillis) {
+            this.number = number;
+            this.modifiedMillis = modifiedMillis;
+        }
+
+        /**
+         * @return the number of the latest write covered, 0 if none since startup
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        /**
+         * @return when that write happened, or when the process started
+         */
+        public long getModifiedMillis() {
+            return modifiedMillis;
+        }
+    }
+}
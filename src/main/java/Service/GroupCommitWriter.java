@@ -0,0 +1,221 @@
+package Service;
+
+import DAO.MessageStore;
+import Model.Message;
+import Util.ThreadMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Inserts messages through one writer thread that groups the inserts of
+ * concurrent callers into batches, so a burst of posts pays for one commit
+ * per batch instead of one per post.
+ *
+ * The writer takes the first waiting message, then keeps collecting until
+ * it has maxBatch of them or maxWaitNanos have passed since the first, and
+ * inserts the lot with MessageStore.insertMessages, which is one
+ * transaction. While a batch commits, the next one builds up in the queue,
+ * so batches grow with load on their own. Each caller's future completes
+ * only once its batch has committed, so a returned message is exactly as
+ * durable as one inserted alone. If a batch fails as a whole, its messages
+ * are retried one at a time, so one bad message cannot fail its neighbours.
+ *
+ * At most maxQueued messages wait for the writer. Callers give their
+ * request slot back while they wait for a commit, so this is the only bound
+ * on posts in flight: once it is full, submit fails at once with
+ * RejectedExecutionException instead of letting the backlog grow.
+ */
+public class GroupCommitWriter {
+    private final MessageStore messageStore;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Pending> queue;
+    private volatile boolean closed;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Marks the end of the queue once the writer is shut down
+     */
+    private static final Pending END = new Pending(null);
+
+    /**
+     * @param messageStore where batches are inserted
+     * @param maxBatch most messages inserted in one transaction
+     * @param maxWaitNanos longest the first message of a batch waits for company
+     * @param maxQueued most messages waiting for the writer; more are rejected
+     */
+    public GroupCommitWriter(MessageStore messageStore, int maxBatch, long maxWaitNanos, int maxQueued) {
+        if (maxBatch < 1 || maxWaitNanos < 0 || maxQueued < 1) {
+            throw new IllegalArgumentException(
+                "group commit needs maxBatch >= 1, maxWaitNanos >= 0 and maxQueued >= 1");
+        }
+        this.messageStore = messageStore;
+        this.maxBatch = maxBatch;
+        this.maxWaitNanos = maxWaitNanos;
+        this.queue = new LinkedBlockingQueue<>(maxQueued);
+        ThreadMode.threadFactory("message-writer").newThread(this::run).start();
+    }
+
+    /**
+     * Queue a message to be inserted in the next batch.
+     * @param message
+     * @return a future for the message with its assigned ID, or for null if
+     * the insert failed; it fails with RejectedExecutionException if the
+     * writer's queue is full or it has been shut down
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        Pending pending = new Pending(message);
+        if (closed) {
+            return rejected("message writer is shut down");
+        }
+        if (!queue.offer(pending)) {
+            rejected.increment();
+            return rejected("message writer queue is full");
+        }
+        // shut down in between: take the message back unless the writer already has it
+        if (closed && queue.remove(pending)) {
+            return rejected("message writer is shut down");
+        }
+        return pending.future;
+    }
+
+    /**
+     * Stop taking messages. Those already queued are still written.
+     */
+    public void shutdown() {
+        closed = true;
+        try {
+            // the writer keeps draining, so a full queue soon has room
+            queue.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return transactions committed, batched or not
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * @return messages inserted
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return messages turned away because the queue was full
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        boolean ending = false;
+        while (!ending) {
+            try {
+                Pending first = queue.take();
+                if (first == END) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatch) {
+                    Pending next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                    }
+                    if (next == END) {
+                        ending = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                ending = true;
+            }
+            commit(batch);
+            batch.clear();
+        }
+        // anything still queued was added before shutdown was seen by its caller
+        for (Pending pending; (pending = queue.poll()) != null; ) {
+            if (pending != END) {
+                commit(List.of(pending));
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            if (batch.size() > 1) {
+                List<Message> messages = new ArrayList<>(batch.size());
+                for (Pending pending : batch) {
+                    messages.add(pending.message);
+                }
+                List<Message> inserted = messageStore.insertMessages(messages);
+                if (inserted != null && inserted.size() == batch.size()) {
+                    batches.increment();
+                    written.add(inserted.size());
+                    for (int i = 0; i < batch.size(); i++) {
+                        batch.get(i).future.complete(inserted.get(i));
+                    }
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());
+        }
+        for (Pending pending : batch) {
+            try {
+                Message inserted = messageStore.insertMessage(pending.message);
+                batches.increment();
+                if (inserted != null) {
+                    written.increment();
+                }
+                pending.future.complete(inserted);
+            } catch (RuntimeException e) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static CompletableFuture<Message> rejected(String reason) {
+        return CompletableFuture.failedFuture(new RejectedExecutionException(reason));
+    }
+
+    /**
+     * A message waiting to be written, and its caller's future
+     */
+    private static class Pending {
+        final Message message;
+        final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        Pending(Message message) {
+            this.message = message;
+        }
+    }
+}
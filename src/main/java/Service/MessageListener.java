@@ -0,0 +1,26 @@
+package Service;
+
+import Model.Message;
+
+/**
+ * Told about every message write that MessageService makes, once the write
+ * has committed and the service's own caches and indexes reflect it.
+ * Listeners run on the writing request's thread, so they should be quick
+ * and must not throw.
+ */
+public interface MessageListener {
+    /**
+     * @param message the new message, with its assigned ID
+     */
+    void onCreate(Message message);
+
+    /**
+     * @param message the message with its new text
+     */
+    void onEdit(Message message);
+
+    /**
+     * @param message the message as it was before being deleted
+     */
+    void onDelete(Message message);
+}
@@ -0,0 +1,411 @@
+package Service;
+
+import Model.Message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory inverted index from each word of message_text to the IDs of
+ * the messages containing it, for newest-first word search.
+ *
+ * Text is split into runs of letters and digits and lowercased. Each word's
+ * posting list is a run of blocks of up to BLOCK_SIZE ascending IDs, each
+ * block stored as its first ID followed by varint-encoded gaps, which takes
+ * a byte or two per posting. New messages have the highest IDs yet, so they
+ * land in the list's last, still uncompressed block and are sealed 128 at a
+ * time. A search walks the rarest word's list from the newest ID down and
+ * checks every other word by jumping to the block that could hold the ID,
+ * so it reads a handful of blocks however long the lists are.
+ *
+ * The index is built from the message store when the service starts and
+ * kept up to date by MessageService. A delete removes the message from the
+ * lists of every word it had, and an edit moves it from the lists of the
+ * words it lost to those of the words it gained, so every hit matches the
+ * message's current text.
+ */
+public class MessageSearchIndex {
+    /**
+     * Most IDs in a sealed block
+     */
+    private static final int BLOCK_SIZE = 128;
+    /**
+     * Words longer than this are cut short, both when indexed and when searched for
+     */
+    private static final int MAX_WORD_LENGTH = 64;
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Index a created message under each of its words.
+     * @param message
+     */
+    public void add(Message message) {
+        List<String> words = words(message.getMessage_text());
+        lock.writeLock().lock();
+        try {
+            for (String word : words) {
+                postings.computeIfAbsent(word, key -> new PostingList()).add(message.getMessage_id());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Re-index an edited message: drop it from the lists of the words its
+     * text lost and add it to those of the words it gained.
+     * @param before the message as it was before the edit
+     * @param after the edited message
+     */
+    public void replace(Message before, Message after) {
+        List<String> oldWords = words(before.getMessage_text());
+        Set<String> newWords = new HashSet<>(words(after.getMessage_text()));
+        lock.writeLock().lock();
+        try {
+            for (String word : oldWords) {
+                if (!newWords.contains(word)) {
+                    removePosting(word, before.getMessage_id());
+                }
+            }
+            for (String word : newWords) {
+                postings.computeIfAbsent(word, key -> new PostingList()).add(after.getMessage_id());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop a deleted message from the lists of its words.
+     * @param message the message as it was before being deleted
+     */
+    public void remove(Message message) {
+        List<String> words = words(message.getMessage_text());
+        lock.writeLock().lock();
+        try {
+            for (String word : words) {
+                removePosting(word, message.getMessage_id());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find messages indexed under every one of the given words, newest first.
+     * @param words as returned by words()
+     * @param beforeId only IDs less than this are returned
+     * @param limit most IDs to return
+     * @return matching message IDs in decreasing order
+     */
+    public int[] search(List<String> words, int beforeId, int limit) {
+        if (words.isEmpty() || limit < 1) {
+            return new int[0];
+        }
+        lock.readLock().lock();
+        try {
+            PostingList[] lists = new PostingList[words.size()];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = postings.get(words.get(i));
+                if (lists[i] == null) {
+                    return new int[0];
+                }
+            }
+            // drive the search with the shortest list, and probe the others in order of length
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+            Probe[] probes = new Probe[lists.length - 1];
+            for (int i = 1; i < lists.length; i++) {
+                probes[i - 1] = new Probe(lists[i]);
+            }
+            int[] hits = new int[Math.min(limit, lists[0].size)];
+            int count = 0;
+            Probe driver = new Probe(lists[0]);
+            for (int messageId = driver.floor(beforeId - 1); messageId > 0 && count < hits.length;
+                    messageId = driver.floor(messageId - 1)) {
+                boolean everyWord = true;
+                for (Probe probe : probes) {
+                    if (probe.floor(messageId) != messageId) {
+                        everyWord = false;
+                        break;
+                    }
+                }
+                if (everyWord) {
+                    hits[count++] = messageId;
+                }
+            }
+            return Arrays.copyOf(hits, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of distinct words indexed
+     */
+    public int wordCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removePosting(String word, int messageId) {
+        PostingList list = postings.get(word);
+        if (list != null && list.remove(messageId) && list.size == 0) {
+            postings.remove(word);
+        }
+    }
+
+    /**
+     * Split text into lowercase words of letters and digits, each given once.
+     * @param text
+     * @return the words, in order of first appearance
+     */
+    public static List<String> words(String text) {
+        LinkedHashSet<String> words = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); ) {
+            int codePoint = i < text.length() ? text.codePointAt(i) : ' ';
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                words.add(word(text, start, i));
+                start = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return new ArrayList<>(words);
+    }
+
+    private static String word(String text, int start, int end) {
+        String word = text.substring(start, end).toLowerCase(Locale.ROOT);
+        if (word.length() > MAX_WORD_LENGTH) {
+            int cut = MAX_WORD_LENGTH;
+            if (Character.isHighSurrogate(word.charAt(cut - 1))) {
+                cut--;
+            }
+            word = word.substring(0, cut);
+        }
+        return word;
+    }
+
+    /**
+     * One word's message IDs: sealed, compressed blocks, then an open block
+     * of the newest IDs. Blocks never overlap, so the IDs read in order block
+     * after block.
+     */
+    private static class PostingList {
+        private Block[] blocks = new Block[1];
+        private int blockCount;
+        private int[] open = new int[8];
+        private int openSize;
+        int size;
+
+        void add(int messageId) {
+            if (blockCount == 0 || messageId > blocks[blockCount - 1].last) {
+                int index = Arrays.binarySearch(open, 0, openSize, messageId);
+                if (index >= 0) {
+                    return;
+                }
+                index = -index - 1;
+                if (openSize == open.length) {
+                    open = Arrays.copyOf(open, Math.min(BLOCK_SIZE, openSize * 2));
+                }
+                System.arraycopy(open, index, open, index + 1, openSize - index);
+                open[index] = messageId;
+                openSize++;
+                size++;
+                if (openSize == BLOCK_SIZE) {
+                    appendBlock(Block.encode(open, 0, openSize));
+                    openSize = 0;
+                }
+                return;
+            }
+            // an edited older message: rewrite the one block its ID falls in
+            int b = Math.max(0, blockFloor(messageId));
+            int[] ids = blocks[b].decode();
+            int index = Arrays.binarySearch(ids, messageId);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            int[] grown = new int[ids.length + 1];
+            System.arraycopy(ids, 0, grown, 0, index);
+            grown[index] = messageId;
+            System.arraycopy(ids, index, grown, index + 1, ids.length - index);
+            size++;
+            if (grown.length <= 2 * BLOCK_SIZE) {
+                blocks[b] = Block.encode(grown, 0, grown.length);
+            } else {
+                int half = grown.length / 2;
+                blocks[b] = Block.encode(grown, 0, half);
+                insertBlock(b + 1, Block.encode(grown, half, grown.length));
+            }
+        }
+
+        boolean remove(int messageId) {
+            int index = Arrays.binarySearch(open, 0, openSize, messageId);
+            if (index >= 0) {
+                System.arraycopy(open, index + 1, open, index, openSize - index - 1);
+                openSize--;
+                size--;
+                return true;
+            }
+            int b = blockFloor(messageId);
+            if (b < 0) {
+                return false;
+            }
+            int[] ids = blocks[b].decode();
+            index = Arrays.binarySearch(ids, messageId);
+            if (index < 0) {
+                return false;
+            }
+            size--;
+            if (ids.length == 1) {
+                System.arraycopy(blocks, b + 1, blocks, b, blockCount - b - 1);
+                blocks[--blockCount] = null;
+                return true;
+            }
+            int[] shrunk = new int[ids.length - 1];
+            System.arraycopy(ids, 0, shrunk, 0, index);
+            System.arraycopy(ids, index + 1, shrunk, index, shrunk.length - index);
+            blocks[b] = Block.encode(shrunk, 0, shrunk.length);
+            return true;
+        }
+
+        /**
+         * @return index of the last block whose first ID is at most messageId, or -1
+         */
+        int blockFloor(int messageId) {
+            int low = 0;
+            int high = blockCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (blocks[middle].first <= messageId) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return high;
+        }
+
+        private void appendBlock(Block block) {
+            insertBlock(blockCount, block);
+        }
+
+        private void insertBlock(int index, Block block) {
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blockCount * 2);
+            }
+            System.arraycopy(blocks, index, blocks, index + 1, blockCount - index);
+            blocks[index] = block;
+            blockCount++;
+        }
+    }
+
+    /**
+     * Up to 2 * BLOCK_SIZE ascending IDs: the first, then the gaps between
+     * neighbours as varints.
+     */
+    private static class Block {
+        final int first;
+        final int last;
+        final int count;
+        final byte[] gaps;
+
+        private Block(int first, int last, int count, byte[] gaps) {
+            this.first = first;
+            this.last = last;
+            this.count = count;
+            this.gaps = gaps;
+        }
+
+        static Block encode(int[] ids, int from, int to) {
+            byte[] out = new byte[(to - from) * 5];
+            int position = 0;
+            for (int i = from + 1; i < to; i++) {
+                int gap = ids[i] - ids[i - 1];
+                while ((gap & ~0x7F) != 0) {
+                    out[position++] = (byte) ((gap & 0x7F) | 0x80);
+                    gap >>>= 7;
+                }
+                out[position++] = (byte) gap;
+            }
+            return new Block(ids[from], ids[to - 1], to - from, Arrays.copyOf(out, position));
+        }
+
+        int[] decode() {
+            int[] ids = new int[count];
+            ids[0] = first;
+            int position = 0;
+            for (int i = 1; i < count; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = gaps[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                ids[i] = ids[i - 1] + gap;
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * Answers "greatest ID at most x" against one posting list, keeping the
+     * last block it decoded, since a search asks about falling IDs.
+     */
+    private static class Probe {
+        private final PostingList list;
+        private int decodedBlock = -1;
+        private int[] decoded;
+
+        Probe(PostingList list) {
+            this.list = list;
+        }
+
+        /**
+         * @return the greatest ID in the list at most messageId, or 0 if there is none
+         */
+        int floor(int messageId) {
+            if (messageId <= 0) {
+                return 0;
+            }
+            if (list.openSize > 0 && list.open[0] <= messageId) {
+                int index = Arrays.binarySearch(list.open, 0, list.openSize, messageId);
+                return list.open[index >= 0 ? index : -index - 2];
+            }
+            int b = list.blockFloor(messageId);
+            if (b < 0) {
+                return 0;
+            }
+            Block block = list.blocks[b];
+            if (messageId >= block.last) {
+                return block.last;
+            }
+            if (b != decodedBlock) {
+                decoded = block.decode();
+                decodedBlock = b;
+            }
+            int index = Arrays.binarySearch(decoded, messageId);
+            return decoded[index >= 0 ? index : -index - 2];
+        }
+    }
+}
@@ -1,107 +1,751 @@
 package Service;
 
+import Model.AccountStats;
 import Model.Message;
+import Model.MessageBatchResult;
 
 import static org.mockito.ArgumentMatchers.anyFloat;
 
-import DAO.AccountDAO;
-import DAO.MessageDAO;
+import DAO.MessageConsumer;
+import DAO.MessageStore;
+import DAO.MessageStores;
+import Util.LruCache;
+import Util.ThreadMode;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class MessageService {
-    private AccountDAO accountDAO;
-    private MessageDAO messageDAO;
+    /**
+     * Page size used when a client asks for a page without giving a limit
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    /**
+     * Largest page the server will return, whatever limit the client asks for
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+    /**
+     * Most messages accepted in one batch post
+     */
+    public static final int MAX_BATCH_SIZE = 1000;
+    /**
+     * Most message IDs that can be looked up in one call
+     */
+    public static final int MAX_IDS_PER_LOOKUP = 100;
+    /**
+     * Messages returned by a search that does not give a limit
+     */
+    public static final int DEFAULT_SEARCH_RESULTS = 20;
+    /**
+     * Most messages returned by one search
+     */
+    public static final int MAX_SEARCH_RESULTS = 100;
+    /**
+     * Accounts listed by getTopAccounts when no limit is given
+     */
+    public static final int DEFAULT_TOP_ACCOUNTS = 10;
+    /**
+     * Most accounts listed by getTopAccounts
+     */
+    public static final int MAX_TOP_ACCOUNTS = 100;
+    /**
+     * Messages fetched per query when reading a user's whole timeline
+     */
+    private static final int TIMELINE_CHUNK_SIZE = 500;
+    /**
+     * Stands in the overtaken map for a message deleted before its create was applied
+     */
+    private static final Message DELETED = new Message();
+
+    private AccountDirectory accountDirectory;
+    private MessageStore messageStore;
+    /**
+     * Messages by ID, including brief "not found" entries for missing IDs
+     */
+    private LruCache<Integer, Message> messageCache;
+    /**
+     * Each user's message IDs, so their timeline is read by ID
+     */
+    private PostedByIndex postedByIndex;
+    /**
+     * Words of every message's text, for search
+     */
+    private MessageSearchIndex searchIndex;
+    /**
+     * Every message by time posted, for time-range reads
+     */
+    private MessageTimeIndex timeIndex;
+    /**
+     * Each user's message count and first and last post times, read from the posted_by index
+     */
+    private AccountStatsIndex accountStats;
+    /**
+     * False if the indexes could not be built, in which case user timelines
+     * are read from the store directly, and search, time-range reads and
+     * account statistics fail
+     */
+    private boolean indexed;
+    /**
+     * Groups the inserts of concurrent createMessage calls into shared transactions
+     */
+    private GroupCommitWriter messageWriter;
+    /**
+     * Applies each committed message to the cache, indexes and listeners, so
+     * the writer thread goes straight on to the next batch
+     */
+    private ExecutorService postWriteExecutor = ThreadMode.newTaskExecutor("message-post-write");
+    /**
+     * Bumped by every write, so readers can tell whether data has changed
+     */
+    private DataVersions dataVersions = new DataVersions();
+    private final List<MessageListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * Striped by message ID. A create's updates to the cache, indexes,
+     * versions and listeners, and an edit's or delete's store write together
+     * with its updates, happen under the message's lock, so that the updates
+     * for one message are applied in the order its writes committed.
+     */
+    private final Object[] messageLocks = new Object[256];
+    /**
+     * Edits and deletes that committed before the create of their message
+     * had been applied, for the create to pick up: the edited message, or
+     * DELETED. Read and written under the message's lock.
+     */
+    private final Map<Integer, Message> overtaken = new ConcurrentHashMap<>();
 
     public MessageService() {
-        accountDAO = new AccountDAO();
-        messageDAO = new MessageDAO();
+        this(new AccountDirectory());
+    }
+
+    /**
+     * @param accountDirectory used to check that a message's poster exists
+     */
+    public MessageService(AccountDirectory accountDirectory) {
+        this(accountDirectory, MessageStores.configured());
+    }
+
+    /**
+     * @param accountDirectory used to check that a message's poster exists
+     * @param messageStore where messages are kept
+     */
+    public MessageService(AccountDirectory accountDirectory, MessageStore messageStore) {
+        this.accountDirectory = accountDirectory;
+        this.messageStore = messageStore;
+        for (int i = 0; i < messageLocks.length; i++) {
+            messageLocks[i] = new Object();
+        }
+        messageCache = new LruCache<>(
+            Integer.getInteger("socialmedia.cache.messages.maxSize", 10_000),
+            Long.getLong("socialmedia.cache.messages.ttlMs", 0),
+            Long.getLong("socialmedia.cache.messages.negativeTtlMs", 2_000));
+        postedByIndex = new PostedByIndex();
+        searchIndex = new MessageSearchIndex();
+        timeIndex = new MessageTimeIndex();
+        accountStats = new AccountStatsIndex(postedByIndex);
+        indexed = buildIndexes();
+        messageWriter = new GroupCommitWriter(messageStore,
+            Integer.getInteger("socialmedia.groupCommit.maxBatch", 64),
+            TimeUnit.MICROSECONDS.toNanos(Long.getLong("socialmedia.groupCommit.maxWaitMicros", 100)),
+            Integer.getInteger("socialmedia.groupCommit.maxQueued", 1024));
+    }
+
+    /**
+     * Have a listener told about every message created, edited or deleted
+     * from now on.
+     * @param listener
+     */
+    public void addListener(MessageListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop the message writer once the messages already submitted are saved.
+     * createMessage fails with RejectedExecutionException afterwards.
+     */
+    public void shutdown() {
+        messageWriter.shutdown();
+        postWriteExecutor.shutdown();
     }
 
     /**
      * Add a message, only if its text is at least one and no more than 255
      * characters, and the user it is posted by actually exists in the
      * database. Return the message if successful, otherwise return null.
+     * The insert may share a transaction with those of concurrent callers,
+     * and returns once that transaction has committed.
      * 
      * @param message
      * @return the given message with its assigned ID if adding was successful,
      * else null.
      */
     public Message createMessage(Message message) {
-        if (!message.getMessage_text().isEmpty()
-            && message.getMessage_text().length() <= 0xFF
-            && accountDAO.getAccountById(message.posted_by) != null) {
-            return messageDAO.insertMessage(message);
-        } else {
-            return null;
+        try {
+            return createMessageAsync(message).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
         }
     }
 
+    /**
+     * Like createMessage, but without waiting for the insert's transaction:
+     * the message is checked and queued for the message writer, and the
+     * future completes once it is committed and visible to readers. Callers
+     * holding a limited resource, such as a request slot, can let it go while
+     * the batch fills.
+     * 
+     * @param message
+     * @return a future for the message with its assigned ID, or for null if
+     * the message is invalid or could not be saved; it fails with
+     * RejectedExecutionException once the service is shut down
+     */
+    public CompletableFuture<Message> createMessageAsync(Message message) {
+        if (!isValidText(message.getMessage_text()) || !accountDirectory.exists(message.posted_by)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return messageWriter.submit(message).thenApplyAsync(inserted -> {
+            if (inserted != null) {
+                applyCreate(inserted);
+            }
+            return inserted;
+        }, postWriteExecutor);
+    }
+
+    /**
+     * Add many messages at once. Each message is checked with the same rules
+     * as createMessage; the valid ones are then inserted together in a single
+     * transaction. Invalid messages do not stop the valid ones being added.
+     * 
+     * @param messages at most MAX_BATCH_SIZE messages
+     * @return one result per given message, in the same order
+     */
+    public List<MessageBatchResult> createMessages(List<Message> messages) {
+        List<MessageBatchResult> results = new ArrayList<>(messages.size());
+        List<Message> valid = new ArrayList<>();
+        List<Integer> validIndexes = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (message == null || !isValidText(message.getMessage_text())) {
+                results.add(MessageBatchResult.failed(i, 400, "message_text must be 1 to 255 characters"));
+            } else if (!accountDirectory.exists(message.getPosted_by())) {
+                results.add(MessageBatchResult.failed(i, 400, "posted_by is not a registered account"));
+            } else {
+                results.add(null);
+                valid.add(message);
+                validIndexes.add(i);
+            }
+        }
+
+        List<Message> inserted = messageStore.insertMessages(valid);
+        for (int i = 0; i < validIndexes.size(); i++) {
+            int index = validIndexes.get(i);
+            if (inserted == null) {
+                results.set(index, MessageBatchResult.failed(index, 500, "the batch could not be saved"));
+            } else {
+                Message message = inserted.get(i);
+                applyCreate(message);
+                results.set(index, MessageBatchResult.created(index, message));
+            }
+        }
+        return results;
+    }
+
     /**
      * Provides a list of all messages in the database
      * 
      * @return list of messages, or null in case of failure
      */
     public List<Message> getAllMessages() {
-        return messageDAO.getAllMessages();
+        return messageStore.getAllMessages();
+    }
+
+    /**
+     * Passes every message in the database to the consumer, in message ID
+     * order, without collecting them into a list first.
+     * 
+     * @param consumer
+     * @return true if every message was passed on, false in case of failure
+     * @throws IOException if the consumer fails
+     */
+    public boolean streamAllMessages(MessageConsumer consumer) throws IOException {
+        return messageStore.streamAllMessages(consumer);
+    }
+
+    /**
+     * Provides one page of messages ordered by message ID, starting after the
+     * given ID. Limits above MAX_PAGE_SIZE are reduced to it.
+     * 
+     * @param afterId only messages with a greater ID are returned, 0 for the first page
+     * @param limit requested page size, at least 1
+     * @return list of messages, or null in case of failure
+     */
+    public List<Message> getMessagesPage(int afterId, int limit) {
+        return messageStore.getMessagesAfter(afterId, Math.min(limit, MAX_PAGE_SIZE));
     }
 
     /**
      * Provides the message with the given ID if it is in the database,
-     * or null otherwise
+     * or null otherwise. Answers from the message cache when it can.
      * @param messageId
      * @return message with ID if present, else null
      */
     public Message getMessageById(int messageId) {
-        return messageDAO.getMessageById(messageId);
+        return messageCache.get(messageId, messageStore::getMessageById);
+    }
+
+    /**
+     * Provides the messages with the given IDs, in the order the IDs were
+     * given. Cached messages are used as they are; every other ID is looked up
+     * with a single query. IDs that do not exist are left out, and repeated
+     * IDs are only returned once.
+     * 
+     * @param messageIds at most MAX_IDS_PER_LOOKUP IDs
+     * @return list of the messages found, or null in case of failure
+     */
+    public List<Message> getMessagesByIds(List<Integer> messageIds) {
+        LinkedHashSet<Integer> uniqueIds = new LinkedHashSet<>(messageIds);
+        boolean[] failed = new boolean[1];
+        Map<Integer, Message> found = messageCache.getAll(uniqueIds, missing -> {
+            List<Message> loaded = messageStore.getMessagesByIds(missing);
+            if (loaded == null) {
+                failed[0] = true;
+                return null;
+            }
+            Map<Integer, Message> byId = new HashMap<>();
+            for (Message message : loaded) {
+                byId.put(message.getMessage_id(), message);
+            }
+            return byId;
+        });
+        if (failed[0]) {
+            return null;
+        }
+        List<Message> messages = new ArrayList<>(found.size());
+        for (Integer messageId : uniqueIds) {
+            Message message = found.get(messageId);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        return messages;
     }
 
     /**
      * Delete message with the given ID. If the message did not exist to begin
-     * with, return null, otherwise return the message now deleted.
+     * with, return null, otherwise return the message now deleted. The delete
+     * and the read of the deleted row are a single statement.
      * @param messageId
      * @return message deleted if it existed, else null
      */
     public Message deleteMessageWithId(int messageId) {
-        Message message = this.getMessageById(messageId);
-        if (message != null) {
-            messageDAO.deleteMessageWithId(messageId);
+        synchronized (lockFor(messageId)) {
+            Message message = messageStore.deleteMessageWithId(messageId);
+            if (message == null) {
+                return null;
+            }
+            // the ID will never be reused, so remember that it is gone
+            messageCache.put(messageId, null);
+            if (isApplied(message)) {
+                postedByIndex.remove(message);
+                searchIndex.remove(message);
+                timeIndex.remove(message);
+            } else {
+                overtaken.put(messageId, DELETED);
+            }
+            dataVersions.bump(message.getPosted_by());
+            for (MessageListener listener : listeners) {
+                listener.onDelete(message);
+            }
+            return message;
         }
-        return message;
     }
 
     /**
      * Edits the message with the given ID to have the given text. Returns the
      * edited messsage if successful, otherwise returns null (if ID not found,
-     * the message is not within 1-255 characters, or an exception occurs)
+     * the message is not within 1-255 characters, or an exception occurs).
+     * The update and the read of the row as it was before are a single
+     * statement; the old text tells the search index which words the message
+     * loses.
      * 
      * @param messageId
      * @param messageText
      * @return edited message if successful, otherwise null
      */
     public Message editMessageWithId(int messageId, String messageText) {
-        if (!messageText.isEmpty() && messageText.length() <= 0xFF) {
-            Message message = this.getMessageById(messageId);
-            if (message != null) {
-                if (messageDAO.editMessageWithId(messageId, messageText)) {
-                    return new Message(
-                        messageId,
-                        message.getPosted_by(),
-                        messageText,
-                        message.getTime_posted_epoch()
-                    );
-                }
+        if (!isValidText(messageText)) {
+            return null;
+        }
+        synchronized (lockFor(messageId)) {
+            Message before = messageStore.editMessageWithId(messageId, messageText);
+            if (before == null) {
+                return null;
+            }
+            Message message = new Message(messageId, before.getPosted_by(), messageText,
+                before.getTime_posted_epoch());
+            messageCache.invalidate(messageId);
+            dataVersions.bump(message.getPosted_by());
+            if (!isApplied(before)) {
+                // announced as created, with this text, once the create is applied
+                overtaken.put(messageId, message);
+                return message;
+            }
+            // the poster and time are unchanged, so the posted_by index still holds
+            searchIndex.replace(before, message);
+            for (MessageListener listener : listeners) {
+                listener.onEdit(message);
+            }
+            return message;
+        }
+    }
+
+    /**
+     * Bring the cache, indexes, versions and listeners up to date with a
+     * committed insert. An edit or delete of the message may have committed
+     * first; the create then takes on the edited text, or is skipped.
+     * @param inserted the message as inserted
+     */
+    private void applyCreate(Message inserted) {
+        int messageId = inserted.getMessage_id();
+        synchronized (lockFor(messageId)) {
+            Message message = overtaken.remove(messageId);
+            if (message == DELETED) {
+                return;
+            }
+            if (message == null) {
+                message = inserted;
+            }
+            messageCache.put(messageId, message);
+            postedByIndex.add(message);
+            searchIndex.add(message);
+            timeIndex.add(message);
+            dataVersions.bump(message.getPosted_by());
+            for (MessageListener listener : listeners) {
+                listener.onCreate(message);
             }
         }
-        return null;
     }
 
     /**
-     * Returns a list of all messages posted by a user with a given ID
+     * @param message
+     * @return false if the message's create has not been applied yet; always
+     * true without indexes, which cannot tell
+     */
+    private boolean isApplied(Message message) {
+        return !indexed || postedByIndex.contains(message);
+    }
+
+    private Object lockFor(int messageId) {
+        return messageLocks[messageId & (messageLocks.length - 1)];
+    }
+
+    /**
+     * @return size and hit, miss and eviction counts of the message cache
+     */
+    public LruCache.Stats getMessageCacheStats() {
+        return messageCache.getStats();
+    }
+
+    /**
+     * @return versions of the message data, globally and per account
+     */
+    public DataVersions getDataVersions() {
+        return dataVersions;
+    }
+
+    /**
+     * @return the writer that createMessage goes through, for its batch counts
+     */
+    public GroupCommitWriter getMessageWriter() {
+        return messageWriter;
+    }
+
+    /**
+     * @return the word index that searchMessages reads
+     */
+    public MessageSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Returns a list of all messages posted by a user with a given ID, read
+     * by ID through the posted_by index
      * @param postedBy
      * @return list of messages, or null in case of exception
      */
     public List<Message> getAllMessagesByUser(int postedBy) {
-        return messageDAO.getAllMessagesByUser(postedBy);
+        if (!indexed) {
+            return messageStore.getAllMessagesByUser(postedBy);
+        }
+        int[] messageIds = postedByIndex.messageIdsAfter(postedBy, 0, Integer.MAX_VALUE);
+        List<Message> messages = new ArrayList<>(messageIds.length);
+        for (int from = 0; from < messageIds.length; from += TIMELINE_CHUNK_SIZE) {
+            List<Message> chunk = loadInOrder(messageIds, from, Math.min(messageIds.length, from + TIMELINE_CHUNK_SIZE));
+            if (chunk == null) {
+                return null;
+            }
+            messages.addAll(chunk);
+        }
+        return messages;
+    }
+
+    /**
+     * Passes every message posted by a user to the consumer, in message ID
+     * order, without collecting them into a list first. Messages are fetched
+     * by ID a chunk at a time.
+     * 
+     * @param postedBy
+     * @param consumer
+     * @return true if every message was passed on, false in case of failure
+     * @throws IOException if the consumer fails
+     */
+    public boolean streamAllMessagesByUser(int postedBy, MessageConsumer consumer) throws IOException {
+        if (!indexed) {
+            return messageStore.streamMessagesByUser(postedBy, consumer);
+        }
+        int[] messageIds = postedByIndex.messageIdsAfter(postedBy, 0, Integer.MAX_VALUE);
+        for (int from = 0; from < messageIds.length; from += TIMELINE_CHUNK_SIZE) {
+            List<Message> chunk = loadInOrder(messageIds, from, Math.min(messageIds.length, from + TIMELINE_CHUNK_SIZE));
+            if (chunk == null) {
+                return false;
+            }
+            for (Message message : chunk) {
+                consumer.accept(message);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Provides one page of the messages posted by a user, ordered by message
+     * ID and starting after the given ID. Limits above MAX_PAGE_SIZE are
+     * reduced to it. The page's IDs come from the posted_by index and the
+     * messages from the message cache where possible.
+     * 
+     * @param postedBy
+     * @param afterId only messages with a greater ID are returned, 0 for the first page
+     * @param limit requested page size, at least 1
+     * @return list of messages, or null in case of exception
+     */
+    public List<Message> getMessagesByUserPage(int postedBy, int afterId, int limit) {
+        if (!indexed) {
+            return messageStore.getMessagesByUserAfter(postedBy, afterId, Math.min(limit, MAX_PAGE_SIZE));
+        }
+        return fillPage((after, count) -> postedByIndex.messageIdsAfter(postedBy, after, count), afterId,
+            Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Provides one page of the messages posted in a time range, ordered by
+     * time_posted_epoch and then message ID. A page starts after the
+     * (time, ID) position of the last message of the previous one; the first
+     * page starts after (since, 0), which comes before every message posted
+     * at since. Limits above MAX_PAGE_SIZE are reduced to it.
+     * 
+     * @param afterTime time of the position to start after
+     * @param afterId ID of the position to start after
+     * @param untilTime only messages posted before this are returned
+     * @param limit requested page size, at least 1
+     * @return list of messages, or null in case of failure
+     */
+    public List<Message> getMessagesByTime(long afterTime, int afterId, long untilTime, int limit) {
+        if (!indexed) {
+            return null;
+        }
+        return fillTimePage((time, id, count) -> timeIndex.positionsBetween(time, id, untilTime, count),
+            afterTime, afterId, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * Like getMessagesByTime, for the messages posted by one user. The
+     * user's (time, ID) order comes from the posted_by index.
+     * 
+     * @param postedBy
+     * @param afterTime time of the position to start after
+     * @param afterId ID of the position to start after
+     * @param untilTime only messages posted before this are returned
+     * @param limit requested page size, at least 1
+     * @return list of messages, or null in case of failure
+     */
+    public List<Message> getMessagesByUserByTime(int postedBy, long afterTime, int afterId, long untilTime,
+            int limit) {
+        if (!indexed) {
+            return null;
+        }
+        return fillTimePage((time, id, count) -> postedByIndex.positionsBetween(postedBy, time, id, untilTime, count),
+            afterTime, afterId, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * @param accountId
+     * @return the account's message count, first and last post times and
+     * posting rate, or null in case of failure
+     */
+    public AccountStats getAccountStats(int accountId) {
+        return indexed ? accountStats.get(accountId) : null;
+    }
+
+    /**
+     * @param limit most accounts to return; limits above MAX_TOP_ACCOUNTS are reduced to it
+     * @return statistics of the accounts with the most messages, most first,
+     * or null in case of failure
+     */
+    public List<AccountStats> getTopAccounts(int limit) {
+        return indexed ? accountStats.top(Math.min(limit, MAX_TOP_ACCOUNTS)) : null;
+    }
+
+    /**
+     * Read a page of messages through an index that may still list messages
+     * deleted since it was read. IDs the store no longer has are passed over
+     * and the index is read on from the last one, so a page only comes back
+     * short when the index has nothing more; callers can take a short page
+     * as the last one.
+     * @param index gives up to count IDs following a position, in page order
+     * @param from the position to start after
+     * @param limit page size
+     * @return the page, or null in case of failure
+     */
+    private List<Message> fillPage(IdIndex index, int from, int limit) {
+        List<Message> page = new ArrayList<>(limit);
+        while (true) {
+            int wanted = limit - page.size();
+            int[] messageIds = index.idsAfter(from, wanted);
+            List<Message> found = getMessagesByIds(messageIds);
+            if (found == null) {
+                return null;
+            }
+            page.addAll(found);
+            if (messageIds.length < wanted || page.size() == limit) {
+                return page;
+            }
+            from = messageIds[messageIds.length - 1];
+        }
+    }
+
+    /**
+     * Like fillPage, for an index of (time, ID) positions.
+     * @param index
+     * @param afterTime with afterId, the position to start after
+     * @param afterId
+     * @param limit page size
+     * @return the page, or null in case of failure
+     */
+    private List<Message> fillTimePage(PositionIndex index, long afterTime, int afterId, int limit) {
+        List<Message> page = new ArrayList<>(limit);
+        while (true) {
+            int wanted = limit - page.size();
+            long[] positions = index.positionsAfter(afterTime, afterId, wanted);
+            int count = positions.length / 2;
+            int[] messageIds = new int[count];
+            for (int i = 0; i < count; i++) {
+                messageIds[i] = (int) positions[2 * i + 1];
+            }
+            List<Message> found = getMessagesByIds(messageIds);
+            if (found == null) {
+                return null;
+            }
+            page.addAll(found);
+            if (count < wanted || page.size() == limit) {
+                return page;
+            }
+            afterTime = positions[2 * count - 2];
+            afterId = messageIds[count - 1];
+        }
+    }
+
+    private interface IdIndex {
+        int[] idsAfter(int from, int count);
+    }
+
+    private interface PositionIndex {
+        long[] positionsAfter(long afterTime, int afterId, int count);
+    }
+
+    private List<Message> getMessagesByIds(int[] messageIds) {
+        List<Integer> ids = new ArrayList<>(messageIds.length);
+        for (int messageId : messageIds) {
+            ids.add(messageId);
+        }
+        return getMessagesByIds(ids);
+    }
+
+    /**
+     * Fetch some of the given messages from the store in one query, skipping
+     * the cache so that a long timeline does not push out hot entries.
+     * @param messageIds IDs in increasing order
+     * @param from first index to fetch
+     * @param to index after the last to fetch
+     * @return the messages found, in the order of their IDs, or null in case of failure
+     */
+    private List<Message> loadInOrder(int[] messageIds, int from, int to) {
+        List<Integer> ids = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            ids.add(messageIds[i]);
+        }
+        List<Message> loaded = messageStore.getMessagesByIds(ids);
+        if (loaded == null) {
+            return null;
+        }
+        loaded.sort(Comparator.comparingInt(Message::getMessage_id));
+        return loaded;
+    }
+
+    /**
+     * Finds messages whose text contains every word of the query, newest
+     * first. Words are runs of letters and digits, matched without regard to
+     * case.
+     * 
+     * @param query
+     * @param beforeId only messages with a lower ID are returned, Integer.MAX_VALUE for the newest
+     * @param limit most messages to return; limits above MAX_SEARCH_RESULTS are reduced to it
+     * @return the matching messages by decreasing ID, or null in case of failure
+     */
+    public List<Message> searchMessages(String query, int beforeId, int limit) {
+        if (!indexed) {
+            return null;
+        }
+        List<String> words = MessageSearchIndex.words(query);
+        return fillPage((before, count) -> searchIndex.search(words, before, count), beforeId,
+            Math.min(limit, MAX_SEARCH_RESULTS));
+    }
+
+    /**
+     * Build the posted_by, search and time indexes in a single pass over
+     * the store.
+     * @return true if every message was read
+     */
+    private boolean buildIndexes() {
+        try {
+            return messageStore.streamAllMessages(message -> {
+                postedByIndex.add(message);
+                searchIndex.add(message);
+                timeIndex.add(message);
+            });
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Message text must be at least one and no more than 255 characters
+     * @param messageText
+     * @return true if the text is acceptable
+     */
+    private boolean isValidText(String messageText) {
+        return messageText != null && !messageText.isEmpty() && messageText.length() <= 0xFF;
     }
 }
@@ -0,0 +1,85 @@
+package Service;
+
+import Model.Message;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * An in-memory index of every message by (time_posted_epoch, message_id),
+ * for reading the messages posted in a time range in time order.
+ *
+ * The entries live in a concurrent skip list, so a range read finds its
+ * start in O(log n) and then walks k entries, without blocking writers or
+ * other readers. The message ID breaks ties between messages posted in the
+ * same second, which gives every message a distinct position that a later
+ * page can resume after.
+ *
+ * The index is built from the message store when the service starts and
+ * kept up to date by MessageService on every create and delete; an edit
+ * does not change the time, so it leaves the index alone.
+ */
+public class MessageTimeIndex {
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    /**
+     * Record a newly created message.
+     * @param message
+     */
+    public void add(Message message) {
+        entries.add(new Entry(message.getTime_posted_epoch(), message.getMessage_id()));
+    }
+
+    /**
+     * Forget a deleted message.
+     * @param message the message as it was before being deleted
+     */
+    public void remove(Message message) {
+        entries.remove(new Entry(message.getTime_posted_epoch(), message.getMessage_id()));
+    }
+
+    /**
+     * @param afterTime with afterId, the position to start after
+     * @param afterId 0 to include every message posted at afterTime
+     * @param untilTime only messages posted before this are returned
+     * @param limit most positions to return
+     * @return the messages' (time, ID) positions in order, flattened: the
+     * time of the i-th at 2i and its ID at 2i + 1
+     */
+    public long[] positionsBetween(long afterTime, int afterId, long untilTime, int limit) {
+        if (afterTime >= untilTime || limit < 1) {
+            return new long[0];
+        }
+        long[] positions = new long[2 * Math.min(limit, 64)];
+        int count = 0;
+        for (Entry entry : entries.subSet(new Entry(afterTime, afterId), false, new Entry(untilTime, 0), false)) {
+            if (2 * count == positions.length) {
+                positions = Arrays.copyOf(positions, 2 * (int) Math.min(limit, 2L * count));
+            }
+            positions[2 * count] = entry.time;
+            positions[2 * count + 1] = entry.id;
+            if (++count == limit) {
+                break;
+            }
+        }
+        return Arrays.copyOf(positions, 2 * count);
+    }
+
+    /**
+     * A message's position in the index.
+     */
+    private static class Entry implements Comparable<Entry> {
+        final long time;
+        final int id;
+
+        Entry(long time, int id) {
+            this.time = time;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return time != other.time ? Long.compare(time, other.time) : Integer.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package Service;
+
+import Model.Message;
+import Util.StripedIntMap;
+
+import java.util.Arrays;
+
+/**
+ * An in-memory secondary index from account ID to the IDs of the messages
+ * that account posted, so per-account reads cost the same however large the
+ * message table grows.
+ *
+ * Each account's timeline is a pair of parallel primitive arrays, sorted by
+ * (time_posted_epoch, message_id). Clients choose their own timestamps, but
+ * in practice they grow with the ID, and while that holds for an account
+ * its timeline is also in ID order and ID lookups are a binary search. Once
+ * it stops holding, ID-ordered reads of that account sort a copy instead.
+ *
+ * The index is built from the message store when the service starts and
+ * kept up to date by MessageService on every create and delete; an edit
+ * changes neither the poster nor the time, so it leaves the index alone.
+ * Changes made to the store by anything else are not seen.
+ */
+public class PostedByIndex {
+    private final StripedIntMap<Timeline> timelines = new StripedIntMap<>(64);
+
+    /**
+     * Record a newly created message.
+     * @param message
+     */
+    public void add(Message message) {
+        timelines.computeIfAbsent(message.getPosted_by(), Timeline::new)
+            .add(message.getTime_posted_epoch(), message.getMessage_id());
+    }
+
+    /**
+     * Forget a deleted message.
+     * @param message the message as it was before being deleted
+     */
+    public void remove(Message message) {
+        Timeline timeline = timelines.get(message.getPosted_by());
+        if (timeline != null) {
+            timeline.remove(message.getTime_posted_epoch(), message.getMessage_id());
+        }
+    }
+
+    /**
+     * @param accountId
+     * @param afterId only IDs greater than this are returned, 0 for all
+     * @param limit most IDs to return
+     * @return the account's message IDs in increasing order
+     */
+    public int[] messageIdsAfter(int accountId, int afterId, int limit) {
+        Timeline timeline = timelines.get(accountId);
+        return timeline == null ? new int[0] : timeline.idsAfter(afterId, limit);
+    }
+
+    /**
+     * @param accountId
+     * @param afterTime with afterId, the (time, ID) position to start after
+     * @param afterId 0 to include every message posted at afterTime
+     * @param untilTime only messages posted before this are returned
+     * @param limit most positions to return
+     * @return the account's (time, ID) positions in order, flattened like
+     * MessageTimeIndex.positionsBetween
+     */
+    public long[] positionsBetween(int accountId, long afterTime, int afterId, long untilTime, int limit) {
+        Timeline timeline = timelines.get(accountId);
+        return timeline == null ? new long[0] : timeline.positionsBetween(afterTime, afterId, untilTime, limit);
+    }
+
+    /**
+     * @param message
+     * @return true if the message is in its poster's timeline
+     */
+    public boolean contains(Message message) {
+        Timeline timeline = timelines.get(message.getPosted_by());
+        return timeline != null && timeline.contains(message.getTime_posted_epoch(), message.getMessage_id());
+    }
+
+    /**
+     * @param accountId
+     * @return how many messages the account has posted and not deleted, and
+     * their earliest and latest time_posted_epoch, read together; or null if
+     * it has none
+     */
+    public long[] summary(int accountId) {
+        Timeline timeline = timelines.get(accountId);
+        return timeline == null ? null : timeline.summary();
+    }
+
+    /**
+     * Pass every account that has messages, with how many, to the action.
+     * Each count is read on its own, so writes during the walk may or may
+     * not be seen.
+     * @param action
+     */
+    public void forEachCount(CountConsumer action) {
+        timelines.forEachValue(timeline -> {
+            int count = timeline.size();
+            if (count > 0) {
+                action.accept(timeline.accountId, count);
+            }
+        });
+    }
+
+    public interface CountConsumer {
+        void accept(int accountId, int count);
+    }
+
+    /**
+     * One account's messages as parallel (time, ID) arrays in time order.
+     */
+    private static class Timeline {
+        final int accountId;
+        private long[] times = new long[4];
+        private int[] ids = new int[4];
+        private int size;
+        /**
+         * Whether ids is in increasing order as well
+         */
+        private boolean idOrdered = true;
+
+        Timeline(int accountId) {
+            this.accountId = accountId;
+        }
+
+        synchronized void add(long time, int messageId) {
+            int index = search(time, messageId);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                times = Arrays.copyOf(times, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            if ((index > 0 && ids[index - 1] > messageId) || (index < size && ids[index] < messageId)) {
+                idOrdered = false;
+            }
+            System.arraycopy(times, index, times, index + 1, size - index);
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            times[index] = time;
+            ids[index] = messageId;
+            size++;
+        }
+
+        synchronized void remove(long time, int messageId) {
+            int index = search(time, messageId);
+            if (index >= 0) {
+                System.arraycopy(times, index + 1, times, index, size - index - 1);
+                System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                size--;
+            }
+        }
+
+        synchronized boolean contains(long time, int messageId) {
+            return search(time, messageId) >= 0;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long[] summary() {
+            return size == 0 ? null : new long[] {size, times[0], times[size - 1]};
+        }
+
+        synchronized int[] idsAfter(int afterId, int limit) {
+            if (idOrdered) {
+                int from = Arrays.binarySearch(ids, 0, size, afterId);
+                from = from >= 0 ? from + 1 : -from - 1;
+                return Arrays.copyOfRange(ids, from, (int) Math.min(size, (long) from + limit));
+            }
+            int[] after = new int[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (ids[i] > afterId) {
+                    after[count++] = ids[i];
+                }
+            }
+            Arrays.sort(after, 0, count);
+            return Arrays.copyOf(after, Math.min(count, limit));
+        }
+
+        synchronized long[] positionsBetween(long afterTime, int afterId, long untilTime, int limit) {
+            int from = search(afterTime, afterId);
+            from = from >= 0 ? from + 1 : -from - 1;
+            int to = -search(untilTime, 0) - 1;
+            int count = (int) Math.max(0, Math.min(to, (long) from + limit) - from);
+            long[] positions = new long[2 * count];
+            for (int i = 0; i < count; i++) {
+                positions[2 * i] = times[from + i];
+                positions[2 * i + 1] = ids[from + i];
+            }
+            return positions;
+        }
+
+        /**
+         * Binary search by (time, ID).
+         * @return the index of the entry, or (-(insertion point) - 1) if absent
+         */
+        private int search(long time, int messageId) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int comparison = times[middle] != time ? Long.compare(times[middle], time)
+                                                       : Integer.compare(ids[middle], messageId);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package Util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs one class of work on its own bounded set of threads, so a flood of
+ * one kind of request cannot take the threads, or the database connections,
+ * that another kind needs.
+ *
+ * At most maxConcurrent tasks run at once and at most maxQueued more wait
+ * for a turn. Anything beyond that is turned away immediately rather than
+ * queued, so callers can answer "busy" instead of piling up. Waiting tasks
+ * hold no thread: on platform threads the bulkhead runs a pool of at most
+ * maxConcurrent threads, started on demand and let go when idle.
+ *
+ * Many tasks never touch the database, so maxConcurrent can be far larger
+ * than the connection pool. Database connections are bounded separately: a
+ * task may only check out a connection while the bulkhead holds fewer than
+ * maxConnections, and otherwise waits on the bulkhead's own quota rather
+ * than in the pool's queue ahead of other bulkheads' tasks. Sizing the
+ * quotas to add up to the pool keeps connections free for every class.
+ */
+public class Bulkhead {
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final int maxConnections;
+    /**
+     * Permits for running or waiting tasks; a failed tryAcquire means full
+     */
+    private final Semaphore admitted;
+    /**
+     * Permits for running tasks
+     */
+    private final Semaphore running;
+    /**
+     * Permits for database connections held by this bulkhead's tasks
+     */
+    private final Semaphore connections;
+    private final ExecutorService executor;
+
+    /**
+     * The bulkhead whose task the current thread is running, if any
+     */
+    private static final ThreadLocal<Bulkhead> CURRENT = new ThreadLocal<>();
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param name used for thread names and metrics
+     * @param maxConcurrent most tasks run at once
+     * @param maxQueued most tasks waiting for a turn, 0 to reject whenever every slot is busy
+     * @param maxConnections most database connections the tasks hold at once
+     */
+    public Bulkhead(String name, int maxConcurrent, int maxQueued, int maxConnections) {
+        if (maxConcurrent < 1 || maxQueued < 0 || maxConnections < 1) {
+            throw new IllegalArgumentException("bulkhead " + name
+                + " needs maxConcurrent >= 1, maxQueued >= 0 and maxConnections >= 1");
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxConnections = maxConnections;
+        this.connections = new Semaphore(maxConnections, true);
+        this.admitted = new Semaphore(maxConcurrent + maxQueued);
+        this.running = new Semaphore(maxConcurrent, true);
+        if (ThreadMode.isVirtual()) {
+            this.executor = ThreadMode.newTaskExecutor("bulkhead-" + name);
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), ThreadMode.threadFactory("bulkhead-" + name));
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+        }
+    }
+
+    /**
+     * Run a task on this bulkhead's threads, unless it is already full.
+     * @param task
+     * @return a future for the task's result; it fails with
+     * RejectedExecutionException straight away if the bulkhead is full
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        if (!admitted.tryAcquire()) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(
+                new RejectedExecutionException("bulkhead " + name + " is full"));
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> run(task, future));
+        } catch (RejectedExecutionException e) {
+            admitted.release();
+            rejected.increment();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> void run(Callable<T> task, CompletableFuture<T> future) {
+        try {
+            running.acquire();
+            CURRENT.set(this);
+            try {
+                future.complete(task.call());
+            } finally {
+                CURRENT.remove();
+                running.release();
+            }
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            admitted.release();
+            completed.increment();
+        }
+    }
+
+    /**
+     * @return the connection quota of the bulkhead running the current
+     * thread's task, or null if the thread is not running one
+     */
+    public static Semaphore currentConnectionQuota() {
+        Bulkhead bulkhead = CURRENT.get();
+        return bulkhead == null ? null : bulkhead.connections;
+    }
+
+    /**
+     * Stop taking tasks and let the running ones finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return the bulkhead's name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return a snapshot of how busy the bulkhead is
+     */
+    public Stats getStats() {
+        int active = maxConcurrent - running.availablePermits();
+        int inFlight = maxConcurrent + maxQueued - admitted.availablePermits();
+        return new Stats(name, maxConcurrent, maxQueued, active, Math.max(0, inFlight - active),
+            maxConnections, maxConnections - connections.availablePermits(), completed.sum(), rejected.sum());
+    }
+
+    /**
+     * Point-in-time saturation figures for a bulkhead.
+     */
+    public static class Stats {
+        private final String name;
+        private final int maxConcurrent;
+        private final int maxQueued;
+        private final int active;
+        private final int queued;
+        private final int maxConnections;
+        private final int connections;
+        private final long completed;
+        private final long rejected;
+
+        Stats(String name, int maxConcurrent, int maxQueued, int active, int queued, int maxConnections,
+              int connections, long completed, long rejected) {
+            this.name = name;
+            this.maxConcurrent = maxConcurrent;
+            this.maxQueued = maxQueued;
+            this.active = active;
+            this.queued = queued;
+            this.maxConnections = maxConnections;
+            this.connections = connections;
+            this.completed = completed;
+            this.rejected = rejected;
+        }
+
+        /**
+         * @return the bulkhead's name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return most tasks run at once
+         */
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        /**
+         * @return most tasks allowed to wait
+         */
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        /**
+         * @return tasks running now
+         */
+        public int getActive() {
+            return active;
+        }
+
+        /**
+         * @return tasks waiting for a turn now
+         */
+        public int getQueued() {
+            return queued;
+        }
+
+        /**
+         * @return most database connections the tasks hold at once
+         */
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        /**
+         * @return database connections the tasks hold now
+         */
+        public int getConnections() {
+            return connections;
+        }
+
+        /**
+         * @return tasks that have finished, successfully or not
+         */
+        public long getCompleted() {
+            return completed;
+        }
+
+        /**
+         * @return tasks turned away because the bulkhead was full
+         */
+        public long getRejected() {
+            return rejected;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "name=" + name +
+                    ", maxConcurrent=" + maxConcurrent +
+                    ", maxQueued=" + maxQueued +
+                    ", active=" + active +
+                    ", queued=" + queued +
+                    ", maxConnections=" + maxConnections +
+                    ", connections=" + connections +
+                    ", completed=" + completed +
+                    ", rejected=" + rejected +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A set of non-negative ints stored as one bit each, safe to read and write
+ * from many threads at once. Reads never lock. The backing array grows to
+ * fit the largest index set; growing takes a lock, ordinary sets and clears
+ * do not.
+ *
+ * Suited to dense IDs such as auto-increment keys, where a million IDs cost
+ * about 125KB.
+ */
+public class ConcurrentBitSet {
+    private volatile AtomicLongArray words;
+    /**
+     * Incremented before and after every grow, so it is odd during one
+     */
+    private volatile int growSequence;
+
+    public ConcurrentBitSet() {
+        this(64);
+    }
+
+    /**
+     * @param initialBits number of bits to allocate up front
+     */
+    public ConcurrentBitSet(int initialBits) {
+        words = new AtomicLongArray(Math.max(1, wordIndex(Math.max(0, initialBits - 1)) + 1));
+    }
+
+    /**
+     * @param index
+     * @return true if the bit is set; false for negative indexes
+     */
+    public boolean get(int index) {
+        if (index < 0) {
+            return false;
+        }
+        AtomicLongArray current = words;
+        int word = wordIndex(index);
+        return word < current.length() && (current.get(word) & bit(index)) != 0;
+    }
+
+    /**
+     * Set a bit, growing the set if needed.
+     * @param index must not be negative
+     */
+    public void set(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("index < 0: " + index);
+        }
+        int word = wordIndex(index);
+        long mask = bit(index);
+        while (true) {
+            int sequence = growSequence;
+            if ((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            AtomicLongArray current = words;
+            if (word >= current.length()) {
+                grow(word);
+                continue;
+            }
+            long old;
+            do {
+                old = current.get(word);
+            } while ((old & mask) == 0 && !current.compareAndSet(word, old, old | mask));
+            if (sequence == growSequence) {
+                return;
+            }
+            // a grow copied the array while we were writing, so repeat on the new one
+        }
+    }
+
+    /**
+     * Clear a bit. Clearing a bit beyond the end of the set does nothing.
+     * @param index
+     */
+    public void clear(int index) {
+        if (index < 0) {
+            return;
+        }
+        int word = wordIndex(index);
+        long mask = bit(index);
+        while (true) {
+            int sequence = growSequence;
+            if ((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            AtomicLongArray current = words;
+            if (word >= current.length()) {
+                return;
+            }
+            long old;
+            do {
+                old = current.get(word);
+            } while ((old & mask) != 0 && !current.compareAndSet(word, old, old & ~mask));
+            if (sequence == growSequence) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of bits set
+     */
+    public int cardinality() {
+        AtomicLongArray current = words;
+        int count = 0;
+        for (int i = 0; i < current.length(); i++) {
+            count += Long.bitCount(current.get(i));
+        }
+        return count;
+    }
+
+    /**
+     * Replace the backing array with one that holds the given word. The
+     * sequence is odd while the copy is in progress, which tells writers
+     * that their update may have missed the copy and must be repeated.
+     */
+    private synchronized void grow(int word) {
+        AtomicLongArray current = words;
+        if (word < current.length()) {
+            return;
+        }
+        growSequence++;
+        int length = Math.max(word + 1, current.length() * 2);
+        AtomicLongArray grown = new AtomicLongArray(length);
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        words = grown;
+        growSequence++;
+    }
+
+    private static int wordIndex(int index) {
+        return index >>> 6;
+    }
+
+    private static long bit(int index) {
+        return 1L << (index & 63);
+    }
+}
@@ -0,0 +1,570 @@
+package Util;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * A bounded pool of JDBC connections wrapped around another DataSource.
+ *
+ * At most maxSize physical connections are ever open. Callers that find the
+ * pool exhausted wait up to the checkout timeout before getting an
+ * SQLTimeoutException. Connections handed out are proxies: closing one closes
+ * any statements created through it and returns the physical connection to
+ * the pool instead of closing it. A background housekeeper closes connections
+ * that sit idle longer than the idle timeout, and reports connections held
+ * longer than the leak threshold along with the thread that checked them
+ * out. Capturing a stack trace on every checkout is too costly to leave on,
+ * so the trace of the code that checked them out is only recorded and
+ * reported when leak tracing is turned on to hunt a leak down. Once the pool
+ * is shut down it hands out no more connections and closes those given
+ * back instead of keeping them.
+ */
+public class ConnectionPool implements DataSource {
+    private final DataSource source;
+    private final int maxSize;
+    private final long checkoutTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final boolean leakTraces;
+
+    /**
+     * One permit per connection that may be checked out. Fair, so waiting
+     * callers are served in arrival order.
+     */
+    private final Semaphore permits;
+    /**
+     * Idle physical connections, most recently returned first so the warmest
+     * connections are reused and the coldest age out.
+     */
+    private final Deque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<Lease> checkedOut = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger open = new AtomicInteger();
+
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutDown;
+
+    /**
+     * @param source where new physical connections come from
+     * @param maxSize maximum number of open physical connections
+     * @param checkoutTimeoutMillis how long getConnection waits for a free connection
+     * @param idleTimeoutMillis idle connections older than this are closed, 0 to never evict
+     * @param leakThresholdMillis connections held longer than this are reported, 0 to disable
+     * @param leakTraces whether to record where each connection was checked out, to report with a leak
+     */
+    public ConnectionPool(DataSource source, int maxSize, long checkoutTimeoutMillis,
+                          long idleTimeoutMillis, long leakThresholdMillis, boolean leakTraces) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.source = source;
+        this.maxSize = maxSize;
+        this.checkoutTimeoutMillis = checkoutTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.leakTraces = leakTraces;
+        this.permits = new Semaphore(maxSize, true);
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = housekeepingPeriodMillis();
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Check out a connection, waiting up to the checkout timeout if every
+     * connection is in use. The caller must close the returned connection to
+     * give it back to the pool.
+     *
+     * @return a pooled connection
+     * @throws SQLTimeoutException if no connection became free in time
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(null);
+    }
+
+    /**
+     * Check out a connection on behalf of a class of callers that may only
+     * hold as many connections at once as its quota has permits. The quota
+     * is taken before the pool's own permit, so callers over their quota
+     * wait on it rather than in the pool's queue, ahead of other classes.
+     * Both waits together are bounded by the checkout timeout, and the quota
+     * permit is given back when the connection is closed.
+     *
+     * @param quota permits for the caller's class, or null for none
+     * @return a pooled connection
+     * @throws SQLTimeoutException if no connection became free in time
+     */
+    public Connection getConnection(Semaphore quota) throws SQLException {
+        if (shutDown) {
+            throw new SQLException("Connection pool is shut down");
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(checkoutTimeoutMillis);
+        try {
+            if (quota != null && !quota.tryAcquire(checkoutTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw timedOut();
+            }
+            try {
+                if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw timedOut();
+                }
+            } catch (SQLException | InterruptedException e) {
+                if (quota != null) {
+                    quota.release();
+                }
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            Connection physical = takeIdle();
+            if (physical == null) {
+                physical = source.getConnection();
+                open.incrementAndGet();
+            }
+            checkouts.increment();
+            return lease(physical, quota);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            if (quota != null) {
+                quota.release();
+            }
+            throw e;
+        }
+    }
+
+    private SQLTimeoutException timedOut() {
+        timeouts.increment();
+        return new SQLTimeoutException("Timed out after " + checkoutTimeoutMillis
+            + "ms waiting for a connection (active=" + checkedOut.size() + ", max=" + maxSize + ")");
+    }
+
+    /**
+     * @return a snapshot of the pool's current usage
+     */
+    public Stats getStats() {
+        long checkoutCount = checkouts.sum();
+        return new Stats(maxSize, open.get(), checkedOut.size(), idle.size(), permits.getQueueLength(),
+                         checkoutCount, timeouts.sum(), leaks.sum(),
+                         TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()),
+                         TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+    }
+
+    /**
+     * Stop handing out connections, close every idle connection and stop
+     * the housekeeper. Connections still checked out are closed as they are
+     * returned.
+     */
+    public void shutdown() {
+        shutDown = true;
+        housekeeper.shutdownNow();
+        closeIdle();
+    }
+
+    private void closeIdle() {
+        IdleConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            discard(entry.connection);
+        }
+    }
+
+    private Connection takeIdle() {
+        IdleConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            try {
+                if (!entry.connection.isClosed()) {
+                    return entry.connection;
+                }
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+            discard(entry.connection);
+        }
+        return null;
+    }
+
+    private Connection lease(Connection physical, Semaphore quota) {
+        String thread = Thread.currentThread().getName();
+        Throwable trace = leakThresholdMillis > 0 && leakTraces
+            ? new Throwable("Connection checked out by " + thread)
+            : null;
+        Lease lease = new Lease(physical, quota, thread, trace);
+        checkedOut.add(lease);
+        lease.proxy = (Connection) Proxy.newProxyInstance(
+            ConnectionPool.class.getClassLoader(), new Class<?>[] { Connection.class }, lease);
+        return lease.proxy;
+    }
+
+    /**
+     * Return a lease's physical connection to the idle deque, resetting any
+     * state the borrower may have changed. Connections that cannot be reset
+     * are closed instead.
+     */
+    private void release(Lease lease) {
+        checkedOut.remove(lease);
+        Connection physical = lease.physical;
+        try {
+            lease.closeStatements();
+            if (physical.isClosed()) {
+                open.decrementAndGet();
+            } else {
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                idle.offerFirst(new IdleConnection(physical, System.nanoTime()));
+                if (shutDown) {
+                    // shutdown may have emptied the deque before this connection was added
+                    closeIdle();
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+            discard(physical);
+        } finally {
+            permits.release();
+            if (lease.quota != null) {
+                lease.quota.release();
+            }
+        }
+    }
+
+    private void discard(Connection physical) {
+        open.decrementAndGet();
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private void recordWait(long nanos) {
+        waitNanos.add(nanos);
+        long max;
+        while (nanos > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, nanos)) {
+            // retry until our wait is recorded or a longer one already is
+        }
+    }
+
+    private long housekeepingPeriodMillis() {
+        long period = 30_000;
+        if (idleTimeoutMillis > 0) {
+            period = Math.min(period, idleTimeoutMillis / 2);
+        }
+        if (leakThresholdMillis > 0) {
+            period = Math.min(period, leakThresholdMillis / 2);
+        }
+        return Math.max(period, 100);
+    }
+
+    private void houseKeep() {
+        long now = System.nanoTime();
+        if (idleTimeoutMillis > 0) {
+            long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+            Iterator<IdleConnection> iterator = idle.descendingIterator();
+            while (iterator.hasNext()) {
+                IdleConnection entry = iterator.next();
+                if (now - entry.idleSince > idleNanos && idle.remove(entry)) {
+                    discard(entry.connection);
+                }
+            }
+        }
+        if (leakThresholdMillis > 0) {
+            long leakNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+            for (Lease lease : checkedOut) {
+                if (!lease.reported && now - lease.checkedOutAt > leakNanos) {
+                    lease.reported = true;
+                    leaks.increment();
+                    System.out.println("Possible connection leak: connection held for "
+                        + TimeUnit.NANOSECONDS.toMillis(now - lease.checkedOutAt) + "ms by " + lease.thread);
+                    if (lease.trace != null) {
+                        lease.trace.printStackTrace(System.out);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pooled connections all use the pool's credentials");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return source.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        source.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        source.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return source.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return source.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return source.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || source.isWrapperFor(iface);
+    }
+
+    private static class IdleConnection {
+        final Connection connection;
+        final long idleSince;
+
+        IdleConnection(Connection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+
+    /**
+     * One checkout of a physical connection. Acts as the invocation handler
+     * behind the proxy given to the borrower.
+     */
+    private class Lease implements InvocationHandler {
+        final Connection physical;
+        /**
+         * The quota the checkout counted against, or null
+         */
+        final Semaphore quota;
+        final String thread;
+        /**
+         * Where the connection was checked out, or null unless leak tracing is on
+         */
+        final Throwable trace;
+        final long checkedOutAt = System.nanoTime();
+        final List<Statement> statements = new ArrayList<>();
+        Connection proxy;
+        volatile boolean reported;
+        private boolean closed;
+
+        Lease(Connection physical, Semaphore quota, String thread, Throwable trace) {
+            this.physical = physical;
+            this.quota = quota;
+            this.thread = thread;
+            this.trace = trace;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            Object result;
+            try {
+                result = method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement) {
+                statements.add((Statement) result);
+            }
+            return result;
+        }
+
+        void closeStatements() {
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    System.out.println(e.getMessage());
+                }
+            }
+            statements.clear();
+        }
+    }
+
+    /**
+     * Point-in-time usage figures for a pool.
+     */
+    public static class Stats {
+        private final int maxSize;
+        private final int open;
+        private final int active;
+        private final int idle;
+        private final int waiting;
+        private final long checkouts;
+        private final long timeouts;
+        private final long leaks;
+        private final long totalWaitMillis;
+        private final long maxWaitMillis;
+
+        Stats(int maxSize, int open, int active, int idle, int waiting, long checkouts,
+              long timeouts, long leaks, long totalWaitMillis, long maxWaitMillis) {
+            this.maxSize = maxSize;
+            this.open = open;
+            this.active = active;
+            this.idle = idle;
+            this.waiting = waiting;
+            this.checkouts = checkouts;
+            this.timeouts = timeouts;
+            this.leaks = leaks;
+            this.totalWaitMillis = totalWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        /**
+         * @return maximum number of physical connections the pool will open
+         */
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * @return physical connections currently open, idle or checked out
+         */
+        public int getOpen() {
+            return open;
+        }
+
+        /**
+         * @return connections currently checked out
+         */
+        public int getActive() {
+            return active;
+        }
+
+        /**
+         * @return open connections waiting in the pool
+         */
+        public int getIdle() {
+            return idle;
+        }
+
+        /**
+         * @return callers currently blocked waiting for a connection
+         */
+        public int getWaiting() {
+            return waiting;
+        }
+
+        /**
+         * @return total successful checkouts
+         */
+        public long getCheckouts() {
+            return checkouts;
+        }
+
+        /**
+         * @return checkouts that gave up after the checkout timeout
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * @return connections reported as possible leaks
+         */
+        public long getLeaks() {
+            return leaks;
+        }
+
+        /**
+         * @return total time callers have spent waiting for a connection
+         */
+        public long getTotalWaitMillis() {
+            return totalWaitMillis;
+        }
+
+        /**
+         * @return longest single wait for a connection
+         */
+        public long getMaxWaitMillis() {
+            return maxWaitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "maxSize=" + maxSize +
+                    ", open=" + open +
+                    ", active=" + active +
+                    ", idle=" + idle +
+                    ", waiting=" + waiting +
+                    ", checkouts=" + checkouts +
+                    ", timeouts=" + timeouts +
+                    ", leaks=" + leaks +
+                    ", totalWaitMillis=" + totalWaitMillis +
+                    ", maxWaitMillis=" + maxWaitMillis +
+                    '}';
+        }
+    }
+}
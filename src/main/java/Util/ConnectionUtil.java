@@ -13,15 +13,18 @@ import org.h2.tools.RunScript;
  * our database. This class utilizes the singleton design pattern. We will be
  * utilizing an in-memory called h2database for the sql demos.
  *
- * DO NOT CHANGE ANYTHING IN THIS CLASS
+ * Connections come from a bounded ConnectionPool. Every connection obtained
+ * from getConnection() must be handed back with closeConnection() once the
+ * caller is done with it.
  */
 public class ConnectionUtil {
 
 	/**
 	 * url will represent our connection string. Since this is an in-memory db, we
-	 * will represent a file location to store the data
+	 * will represent a file location to store the data. Benchmarks point
+	 * socialmedia.db.url at a database of their own.
 	 */
-	private static String url = "jdbc:h2:./h2/db;";
+	private static String url = System.getProperty("socialmedia.db.url", "jdbc:h2:./h2/db;");
 	/**
 	 * Default username for connecting to h2
 	 */
@@ -31,31 +34,104 @@ public class ConnectionUtil {
 	 */
 	private static String password = "sa";
 
+	/**
+	 * Maximum number of physical connections open at once
+	 */
+	private static int maxPoolSize = Integer.getInteger("socialmedia.pool.maxSize", 10);
+	/**
+	 * How long a caller waits for a free connection before giving up
+	 */
+	private static long checkoutTimeoutMillis = Long.getLong("socialmedia.pool.checkoutTimeoutMs", 5_000);
+	/**
+	 * Connections idle for longer than this are closed
+	 */
+	private static long idleTimeoutMillis = Long.getLong("socialmedia.pool.idleTimeoutMs", 60_000);
+	/**
+	 * Connections held for longer than this are reported as possible leaks
+	 */
+	private static long leakThresholdMillis = Long.getLong("socialmedia.pool.leakThresholdMs", 30_000);
+	/**
+	 * Whether a leak report also shows the stack trace of the checkout; costs a trace per checkout, so off by default
+	 */
+	private static boolean leakTraces = Boolean.getBoolean("socialmedia.pool.leakTrace");
+
 	/**
 	 * DataSource for pooling. Pooling enables the creation of multiple connections when connections are closed.
 	 */
-	private static JdbcDataSource pool = new JdbcDataSource();
+	private static ConnectionPool pool;
 
 	/**
 	 * static initialization block to establish credentials for DataSoure Pool
 	 */
 	static {
-		pool.setURL(url);
-		pool.setUser(username);
-		pool.setPassword(password);
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL(url);
+		h2.setUser(username);
+		h2.setPassword(password);
+		pool = new ConnectionPool(h2, maxPoolSize, checkoutTimeoutMillis, idleTimeoutMillis, leakThresholdMillis,
+			leakTraces);
 	}
 
 	/**
+	 * When called from a bulkhead's task the connection counts against that
+	 * bulkhead's connection quota.
 	 * @return an active connection to the database
+	 * @throws DatabaseUnavailableException if no connection could be had,
+	 * for instance because the pool stayed exhausted for the checkout timeout
 	 */
 	public static Connection getConnection() {
 		try {
-			return pool.getConnection();
+			return pool.getConnection(Bulkhead.currentConnectionQuota());
+		} catch (SQLException e) {
+			throw new DatabaseUnavailableException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Like getConnection(), counting a failure to get a connection against
+	 * the query the caller was about to run.
+	 * @param timer the caller's query timer
+	 * @return an active connection to the database
+	 * @throws DatabaseUnavailableException if no connection could be had
+	 */
+	public static Connection getConnection(Metrics.Timer timer) {
+		try {
+			return getConnection();
+		} catch (DatabaseUnavailableException e) {
+			timer.failed();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return a connection obtained from getConnection() to the pool. Safe to
+	 * call with null or an already closed connection.
+	 * @param connection
+	 */
+	public static void closeConnection(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		try {
+			connection.close();
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
+	}
+
+	/**
+	 * @return the most physical connections the pool opens at once
+	 */
+	public static int getMaxPoolSize() {
+		return maxPoolSize;
+	}
 
-		return null;
+	/**
+	 * @return a snapshot of connection pool usage: active, idle and waiting
+	 * counts as well as time spent waiting for connections
+	 */
+	public static ConnectionPool.Stats getPoolStats() {
+		return pool.getStats();
 	}
 
 	/**
@@ -64,11 +140,14 @@ public class ConnectionUtil {
 	 * file in resources. This will be performed before every test.
 	 */
 	public static void resetTestDatabase() {
+		Connection connection = getConnection();
 		try {
 			FileReader sqlReader = new FileReader("src/main/resources/SocialMedia.sql");
-			RunScript.execute(getConnection(), sqlReader);
+			RunScript.execute(connection, sqlReader);
 		} catch (SQLException | FileNotFoundException e) {
 			e.printStackTrace();
+		} finally {
+			closeConnection(connection);
 		}
 	}
 }
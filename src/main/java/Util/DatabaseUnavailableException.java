@@ -0,0 +1,13 @@
+package Util;
+
+/**
+ * Thrown when no database connection can be had, most often because the
+ * connection pool stayed exhausted for the whole checkout timeout. The
+ * request cannot be served right now, but may be if it is retried, so the
+ * controller answers it with a 503.
+ */
+public class DatabaseUnavailableException extends RuntimeException {
+    public DatabaseUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,297 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread-safe, read-through cache that evicts the least recently
+ * used entry once it is full.
+ *
+ * Entries may expire after a fixed time to live. The loader's "not found"
+ * answer (null) can be cached too, under its own, usually much shorter, time
+ * to live, so repeated lookups of missing keys stay out of the database.
+ *
+ * Loads run outside the cache's lock. A load that overlaps a put or an
+ * invalidation of the same key is returned to its caller but not stored,
+ * so a slow read can never overwrite a newer write; writes to other keys
+ * do not get in its way.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    /**
+     * Keys being loaded, each with a token for its latest load. A put or
+     * invalidation of the key drops the token, and a load only stores its
+     * result if its token is still there when it finishes.
+     */
+    private final HashMap<K, Object> loading = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize most entries held at once, found or not found
+     * @param ttlMillis how long a value stays fresh, 0 for as long as it is not evicted
+     * @param negativeTtlMillis how long a "not found" answer stays cached, 0 to not cache them
+     */
+    public LruCache(int maxSize, long ttlMillis, long negativeTtlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis);
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the cached value for a key, loading and caching it on a miss.
+     *
+     * @param key
+     * @param loader called on a miss, may return null for "not found"
+     * @return the value, or null if the key is known not to exist
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Object token = new Object();
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (!entry.isExpired(System.nanoTime())) {
+                    hits.increment();
+                    return entry.value;
+                }
+                entries.remove(key);
+                evictions.increment();
+            }
+            loading.put(key, token);
+        }
+        misses.increment();
+
+        V value = null;
+        boolean loaded = false;
+        try {
+            value = loader.apply(key);
+            loaded = true;
+        } finally {
+            synchronized (this) {
+                if (loading.remove(key, token) && loaded) {
+                    store(key, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Return the values for many keys, loading every missing key with a
+     * single call to the loader.
+     *
+     * @param keys
+     * @param loader given the keys that missed, returns the values it found
+     * by key, or null if it failed; keys it leaves out of a non-null result
+     * are cached as not found
+     * @return the found values by key; keys that do not exist are left out
+     */
+    public Map<K, V> getAll(Collection<K> keys, Function<List<K>, Map<K, V>> loader) {
+        Map<K, V> found = new HashMap<>();
+        List<K> missing = new ArrayList<>();
+        Object token = new Object();
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (K key : keys) {
+                Entry<V> entry = entries.get(key);
+                if (entry != null && entry.isExpired(now)) {
+                    entries.remove(key);
+                    evictions.increment();
+                    entry = null;
+                }
+                if (entry == null) {
+                    missing.add(key);
+                    loading.put(key, token);
+                } else if (entry.value != null) {
+                    found.put(key, entry.value);
+                }
+            }
+        }
+        hits.add(keys.size() - missing.size());
+        misses.add(missing.size());
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        Map<K, V> loaded = null;
+        try {
+            loaded = loader.apply(missing);
+        } finally {
+            synchronized (this) {
+                for (K key : missing) {
+                    if (loading.remove(key, token) && loaded != null) {
+                        store(key, loaded.get(key));
+                    }
+                }
+            }
+        }
+        if (loaded != null) {
+            found.putAll(loaded);
+        }
+        return found;
+    }
+
+    /**
+     * Return the cached value for a key without loading it.
+     *
+     * @param key
+     * @return the cached value, or null if it is absent, expired or cached as not found
+     */
+    public synchronized V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || entry.isExpired(System.nanoTime())) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Store a value for a key, replacing any cached value.
+     *
+     * @param key
+     * @param value the value, or null to record that the key does not exist
+     */
+    public synchronized void put(K key, V value) {
+        loading.remove(key);
+        store(key, value);
+    }
+
+    /**
+     * Drop any cached value for a key.
+     *
+     * @param key
+     */
+    public synchronized void invalidate(K key) {
+        loading.remove(key);
+        entries.remove(key);
+    }
+
+    /**
+     * @return a snapshot of the cache's size and hit, miss and eviction counts
+     */
+    public Stats getStats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new Stats(size, maxSize, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private void store(K key, V value) {
+        long ttl = value == null ? negativeTtlNanos : ttlNanos;
+        if (value == null && ttl <= 0) {
+            entries.remove(key);
+            return;
+        }
+        long expiresAt = ttl > 0 ? System.nanoTime() + ttl : Long.MAX_VALUE;
+        entries.put(key, new Entry<>(value, expiresAt));
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != Long.MAX_VALUE && now - expiresAt >= 0;
+        }
+    }
+
+    /**
+     * Point-in-time usage figures for a cache.
+     */
+    public static class Stats {
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        Stats(int size, int maxSize, long hits, long misses, long evictions) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        /**
+         * @return entries currently cached, including "not found" entries
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return most entries the cache will hold
+         */
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        /**
+         * @return lookups answered from the cache
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return lookups that had to call the loader
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return entries dropped because the cache was full or they expired
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "size=" + size +
+                    ", maxSize=" + maxSize +
+                    ", hits=" + hits +
+                    ", misses=" + misses +
+                    ", evictions=" + evictions +
+                    '}';
+        }
+    }
+}
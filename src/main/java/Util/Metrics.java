@@ -0,0 +1,192 @@
+package Util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry of request and query metrics, written out in the
+ * Prometheus text exposition format.
+ *
+ * Everything on the recording path is lock-free and, once a route or status
+ * has been seen for the first time, allocation-free: routes are looked up by
+ * the route template string Javalin already holds, and statuses by index
+ * into an array.
+ */
+public class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final int FIRST_STATUS = 100;
+    private static final int LAST_STATUS = 599;
+
+    private static final ConcurrentMap<String, RouteMetrics> ROUTES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+    /**
+     * Record one finished HTTP request.
+     * @param method HTTP method, e.g. "GET"; should be a constant string
+     * @param route the route template that matched, e.g. "messages/{message_id}"
+     * @param status response status code
+     * @param nanos how long the request took
+     */
+    public static void recordRequest(String method, String route, int status, long nanos) {
+        RouteMetrics routeMetrics = ROUTES.get(route);
+        if (routeMetrics == null) {
+            routeMetrics = ROUTES.computeIfAbsent(route, RouteMetrics::new);
+        }
+        routeMetrics.histogram(method, status).record(nanos);
+    }
+
+    /**
+     * Return the timer registered under a name, creating it the first time.
+     * Meant to be called once and kept in a static final field.
+     * @param name e.g. "MessageDAO.insertMessage"
+     * @return the timer
+     */
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    /**
+     * Append every request and timer metric to a Prometheus text exposition.
+     * @param out
+     */
+    public static void writeTo(StringBuilder out) {
+        header(out, "http_request_duration_seconds", "summary", "HTTP request latency by route and status");
+        for (RouteMetrics routeMetrics : sorted(ROUTES).values()) {
+            for (Map.Entry<String, AtomicReferenceArray<LatencyHistogram>> byMethod
+                    : sorted(routeMetrics.byMethod).entrySet()) {
+                for (int status = FIRST_STATUS; status <= LAST_STATUS; status++) {
+                    LatencyHistogram histogram = byMethod.getValue().get(status - FIRST_STATUS);
+                    if (histogram != null) {
+                        String labels = "method=\"" + byMethod.getKey() + "\",route=\""
+                            + escape(routeMetrics.route) + "\",status=\"" + status + "\"";
+                        summary(out, "http_request_duration_seconds", labels, histogram.snapshot());
+                    }
+                }
+            }
+        }
+
+        header(out, "dao_query_duration_seconds", "summary", "Database query latency by DAO method");
+        Map<String, Timer> timers = sorted(TIMERS);
+        for (Timer timer : timers.values()) {
+            summary(out, "dao_query_duration_seconds", "method=\"" + timer.name + "\"", timer.histogram.snapshot());
+        }
+        header(out, "dao_query_errors_total", "counter", "Database queries that failed, by DAO method");
+        for (Timer timer : timers.values()) {
+            sample(out, "dao_query_errors_total", "method=\"" + timer.name + "\"", timer.errors.sum());
+        }
+    }
+
+    /**
+     * Append a "# HELP" and "# TYPE" line for a metric.
+     * @param out
+     * @param name
+     * @param type counter, gauge or summary
+     * @param help
+     */
+    public static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Append one sample line.
+     * @param out
+     * @param name
+     * @param labels label pairs without braces, or an empty string for none
+     * @param value
+     */
+    public static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+        for (double quantile : QUANTILES) {
+            sample(out, name, labels + ",quantile=\"" + quantile + "\"", seconds(snapshot.valueAt(quantile)));
+        }
+        sample(out, name + "_sum", labels, seconds(snapshot.getSum()));
+        sample(out, name + "_count", labels, snapshot.getCount());
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static <V> Map<String, V> sorted(Map<String, V> map) {
+        return new TreeMap<>(map);
+    }
+
+    /**
+     * One latency histogram per method and status code for a single route.
+     * Methods are keyed by Javalin's enum names, which are constants, so
+     * looking one up allocates nothing.
+     */
+    private static class RouteMetrics {
+        final String route;
+        final ConcurrentMap<String, AtomicReferenceArray<LatencyHistogram>> byMethod = new ConcurrentHashMap<>();
+
+        RouteMetrics(String route) {
+            this.route = route;
+        }
+
+        LatencyHistogram histogram(String method, int status) {
+            AtomicReferenceArray<LatencyHistogram> byStatus = byMethod.get(method);
+            if (byStatus == null) {
+                byStatus = byMethod.computeIfAbsent(method,
+                    key -> new AtomicReferenceArray<>(LAST_STATUS - FIRST_STATUS + 1));
+            }
+            int index = Math.min(Math.max(status, FIRST_STATUS), LAST_STATUS) - FIRST_STATUS;
+            LatencyHistogram histogram = byStatus.get(index);
+            if (histogram == null) {
+                byStatus.compareAndSet(index, null, new LatencyHistogram());
+                histogram = byStatus.get(index);
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * Times one kind of operation and counts its failures.
+     */
+    public static class Timer {
+        private final String name;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        Timer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Record an operation that started at the given time.
+         * @param startNanos the System.nanoTime() taken when it started
+         */
+        public void record(long startNanos) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Count one failed operation.
+         */
+        public void failed() {
+            errors.increment();
+        }
+    }
+}
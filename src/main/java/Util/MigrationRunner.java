@@ -0,0 +1,143 @@
+package Util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.h2.tools.RunScript;
+
+/**
+ * Brings the database schema up to date by applying numbered migration
+ * scripts, each exactly once.
+ *
+ * Scripts live in src/main/resources/db/migration and are named
+ * V{version}__{description}.sql. Every applied script is recorded in the
+ * schema_history table along with a checksum, so later runs skip it and warn
+ * if it has been edited since. New scripts must be added to MIGRATIONS, in
+ * order, and never changed once released.
+ */
+public class MigrationRunner {
+    /**
+     * Every migration, oldest first
+     */
+    private static final String[] MIGRATIONS = {
+        "V1__baseline_schema.sql",
+        "V2__message_indexes.sql",
+    };
+
+    private static final String RESOURCE_DIRECTORY = "/db/migration/";
+
+    /**
+     * Apply every migration that has not been applied yet. Safe to call on
+     * every startup; once the schema is current it only reads the history.
+     * @return the number of migrations applied
+     */
+    public static synchronized int migrate() {
+        Connection connection = ConnectionUtil.getConnection();
+        int applied = 0;
+        try {
+            createHistoryTable(connection);
+            Map<Integer, Long> history = readHistory(connection);
+            for (String script : MIGRATIONS) {
+                int version = versionOf(script);
+                String sql = readScript(script);
+                long checksum = checksum(sql);
+                Long recorded = history.get(version);
+                if (recorded == null) {
+                    apply(connection, version, script, sql, checksum);
+                    applied++;
+                } else if (recorded != checksum) {
+                    System.out.println("Migration " + script + " has changed since it was applied");
+                }
+            }
+        } catch (SQLException | IOException e) {
+            System.out.println("Migration failed: " + e.getMessage());
+        } finally {
+            ConnectionUtil.closeConnection(connection);
+        }
+        return applied;
+    }
+
+    private static void createHistoryTable(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE IF NOT EXISTS schema_history ("
+            + "version int primary key, "
+            + "script varchar(255), "
+            + "checksum bigint, "
+            + "installed_on timestamp default current_timestamp, "
+            + "execution_ms bigint)");
+    }
+
+    private static Map<Integer, Long> readHistory(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        ResultSet resultSet = statement.executeQuery("SELECT version, checksum FROM schema_history");
+        Map<Integer, Long> history = new HashMap<>();
+        while (resultSet.next()) {
+            history.put(resultSet.getInt("version"), resultSet.getLong("checksum"));
+        }
+        return history;
+    }
+
+    /**
+     * Run one script and record it. The script and its history row commit
+     * together, although H2 commits DDL statements on its own as it goes.
+     */
+    private static void apply(Connection connection, int version, String script, String sql, long checksum)
+            throws SQLException {
+        long start = System.currentTimeMillis();
+        connection.setAutoCommit(false);
+        try {
+            RunScript.execute(connection, new StringReader(sql));
+            PreparedStatement preparedStatement = connection.prepareStatement(
+                "INSERT INTO schema_history (version, script, checksum, execution_ms) VALUES (?, ?, ?, ?)");
+            preparedStatement.setInt(1, version);
+            preparedStatement.setString(2, script);
+            preparedStatement.setLong(3, checksum);
+            preparedStatement.setLong(4, System.currentTimeMillis() - start);
+            preparedStatement.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Migration " + script + " failed: " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        System.out.println("Applied migration " + script);
+    }
+
+    private static int versionOf(String script) {
+        return Integer.parseInt(script.substring(1, script.indexOf("__")));
+    }
+
+    private static String readScript(String script) throws IOException {
+        InputStream in = MigrationRunner.class.getResourceAsStream(RESOURCE_DIRECTORY + script);
+        if (in == null) {
+            throw new IOException("Missing migration " + RESOURCE_DIRECTORY + script);
+        }
+        StringBuilder sql = new StringBuilder();
+        try (InputStreamReader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                sql.append(buffer, 0, read);
+            }
+        }
+        return sql.toString();
+    }
+
+    private static long checksum(String sql) {
+        CRC32 crc = new CRC32();
+        crc.update(sql.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
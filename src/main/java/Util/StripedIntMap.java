@@ -0,0 +1,301 @@
+package Util;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * A thread-safe map from int keys to objects, built from open-addressing
+ * hash tables with no boxing of keys.
+ *
+ * Keys are spread over a fixed number of stripes, each a linear-probing
+ * table behind its own lock, so writers to different stripes never wait on
+ * each other. Reads first try an optimistic, lock-free pass and only take
+ * the stripe's read lock if a writer got in the way. Null values are not
+ * allowed; an empty slot is one whose value is null.
+ *
+ * @param <V> value type
+ */
+public class StripedIntMap<V> {
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+
+    private final Stripe<V>[] stripes;
+    private final int stripeShift;
+
+    /**
+     * @param concurrency roughly how many threads may write at once; rounded
+     * up to a power of two to give the number of stripes
+     */
+    @SuppressWarnings("unchecked")
+    public StripedIntMap(int concurrency) {
+        int stripeCount = Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1;
+        stripes = (Stripe<V>[]) new Stripe<?>[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        stripeShift = 32 - Integer.numberOfTrailingZeros(stripeCount);
+    }
+
+    /**
+     * @param key
+     * @return the value for the key, or null if there is none
+     */
+    public V get(int key) {
+        int hash = hash(key);
+        return stripeFor(hash).get(key, hash);
+    }
+
+    /**
+     * @param key
+     * @param value not null
+     * @return the value previously held for the key, or null
+     */
+    public V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("StripedIntMap does not hold null values");
+        }
+        int hash = hash(key);
+        return stripeFor(hash).put(key, hash, value);
+    }
+
+    /**
+     * Return the value for a key, creating and storing it first if there is
+     * none. The function runs under the stripe's lock, so it should be quick.
+     * @param key
+     * @param create makes the value for a missing key, must not return null
+     * @return the existing or new value
+     */
+    public V computeIfAbsent(int key, IntFunction<V> create) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        int hash = hash(key);
+        return stripeFor(hash).computeIfAbsent(key, hash, create);
+    }
+
+    /**
+     * @param key
+     * @return the value removed, or null if there was none
+     */
+    public V remove(int key) {
+        int hash = hash(key);
+        return stripeFor(hash).remove(key, hash);
+    }
+
+    /**
+     * @return number of keys held; exact only when no writes are in progress
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * Pass every value to the action, one stripe at a time under that
+     * stripe's read lock. Values written during the walk may or may not be
+     * seen.
+     * @param action
+     */
+    public void forEachValue(Consumer<? super V> action) {
+        for (Stripe<V> stripe : stripes) {
+            stripe.forEachValue(action);
+        }
+    }
+
+    private Stripe<V> stripeFor(int hash) {
+        return stripes[hash >>> stripeShift];
+    }
+
+    /**
+     * Murmur3's finalizer, so sequential IDs spread over every stripe and slot
+     */
+    private static int hash(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * One linear-probing table. The low bits of the hash pick the home slot;
+     * the high bits have already picked the stripe.
+     */
+    private static class Stripe<V> {
+        private final StampedLock lock = new StampedLock();
+        private int[] keys = new int[INITIAL_STRIPE_CAPACITY];
+        private Object[] values = new Object[INITIAL_STRIPE_CAPACITY];
+        private int size;
+
+        V get(int key, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                V value = find(keys, values, key, hash);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return find(keys, values, key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Probe for a key. Safe to run against a table being changed by a
+         * writer: it never indexes out of bounds or loops forever, and any
+         * answer it gives is thrown away by the caller unless validated.
+         */
+        @SuppressWarnings("unchecked")
+        private static <V> V find(int[] keys, Object[] values, int key, int hash) {
+            int capacity = Math.min(keys.length, values.length);
+            int mask = capacity - 1;
+            int slot = hash & mask;
+            for (int probes = 0; probes < capacity; probes++) {
+                Object value = values[slot];
+                if (value == null) {
+                    return null;
+                }
+                if (keys[slot] == key) {
+                    return (V) value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        V put(int key, int hash, V value) {
+            long stamp = lock.writeLock();
+            try {
+                return insert(key, hash, value);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        V computeIfAbsent(int key, int hash, IntFunction<V> create) {
+            long stamp = lock.writeLock();
+            try {
+                V existing = find(keys, values, key, hash);
+                if (existing != null) {
+                    return existing;
+                }
+                V value = create.apply(key);
+                insert(key, hash, value);
+                return value;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private V insert(int key, int hash, V value) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    V previous = (V) values[slot];
+                    values[slot] = value;
+                    return previous;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+            return null;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            int[] newKeys = new int[oldKeys.length * 2];
+            Object[] newValues = new Object[oldKeys.length * 2];
+            int mask = newKeys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (newValues[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    newKeys[slot] = oldKeys[i];
+                    newValues[slot] = oldValues[i];
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+
+        /**
+         * Remove a key, then shift later entries of the same probe run back
+         * so that no tombstones are needed.
+         */
+        @SuppressWarnings("unchecked")
+        V remove(int key, int hash) {
+            long stamp = lock.writeLock();
+            try {
+                int mask = keys.length - 1;
+                int slot = hash & mask;
+                while (values[slot] != null && keys[slot] != key) {
+                    slot = (slot + 1) & mask;
+                }
+                if (values[slot] == null) {
+                    return null;
+                }
+                V removed = (V) values[slot];
+                int gap = slot;
+                int next = (gap + 1) & mask;
+                while (values[next] != null) {
+                    int home = hash(keys[next]) & mask;
+                    // move the entry into the gap unless its home lies cyclically in (gap, next]
+                    boolean homeBetween = gap <= next ? (home > gap && home <= next) : (home > gap || home <= next);
+                    if (!homeBetween) {
+                        keys[gap] = keys[next];
+                        values[gap] = values[next];
+                        gap = next;
+                    }
+                    next = (next + 1) & mask;
+                }
+                values[gap] = null;
+                size--;
+                return removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEachValue(Consumer<? super V> action) {
+            long stamp = lock.readLock();
+            try {
+                for (Object value : values) {
+                    if (value != null) {
+                        action.accept((V) value);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package Util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides whether the application runs its blocking work on virtual threads
+ * or on ordinary platform threads, and hands out thread factories to match.
+ *
+ * Virtual threads are opt-in: start the JVM with
+ * -Dsocialmedia.virtualThreads=true on JDK 21 or newer. The virtual thread
+ * API is reached by reflection so the project still compiles for Java 17;
+ * on an older runtime the option is ignored with a warning.
+ *
+ * H2 synchronizes internally, which pins a virtual thread to its carrier for
+ * the length of a JDBC call. The connection pool still bounds how many such
+ * calls run at once, so this limits database concurrency, not the number of
+ * requests that can wait.
+ */
+public class ThreadMode {
+    private static final Method OF_VIRTUAL = lookUpOfVirtual();
+    private static final boolean VIRTUAL = Boolean.getBoolean("socialmedia.virtualThreads") && available();
+
+    /**
+     * @return true if request handling and background work should use virtual threads
+     */
+    public static boolean isVirtual() {
+        return VIRTUAL;
+    }
+
+    /**
+     * @param name prefix for the names of threads made by the factory
+     * @return a factory for virtual threads in virtual mode, otherwise for daemon platform threads
+     */
+    public static ThreadFactory threadFactory(String name) {
+        if (VIRTUAL) {
+            try {
+                Object builder = OF_VIRTUAL.invoke(null);
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Virtual threads are available but could not be created", e);
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * An executor that runs each task on a thread of its own in virtual mode,
+     * or on a cached pool of platform threads otherwise.
+     * @param name prefix for thread names
+     * @return a new executor
+     */
+    public static ExecutorService newTaskExecutor(String name) {
+        ThreadFactory factory = threadFactory(name);
+        if (VIRTUAL) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Virtual threads are available but could not be created", e);
+            }
+        }
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    private static Method lookUpOfVirtual() {
+        try {
+            return Thread.class.getMethod("ofVirtual");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static boolean available() {
+        if (OF_VIRTUAL == null) {
+            System.out.println("socialmedia.virtualThreads is set but this JDK (" + Runtime.version()
+                + ") has no virtual threads; using platform threads");
+            return false;
+        }
+        try {
+            OF_VIRTUAL.invoke(null);
+            return true;
+        } catch (ReflectiveOperationException e) {
+            // JDK 19 and 20 only allow virtual threads with --enable-preview
+            System.out.println("socialmedia.virtualThreads is set but virtual threads are disabled on this JDK ("
+                + Runtime.version() + "); using platform threads");
+            return false;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+-- Per-user timelines filter on posted_by and page in message_id order.
+create index if not exists message_posted_by_idx on message (posted_by, message_id);
+-- Time-ordered feeds and time ranges scan by time_posted_epoch, with message_id breaking ties.
+create index if not exists message_time_posted_idx on message (time_posted_epoch, message_id);
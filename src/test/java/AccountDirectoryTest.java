@@ -0,0 +1,70 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Service.AccountDirectory;
+import Util.ConnectionUtil;
+
+public class AccountDirectoryTest {
+    AccountDirectory accountDirectory;
+
+    /**
+     * Before every test, reset the database so it holds only the seeded account, and build a new directory from it.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        accountDirectory = new AccountDirectory();
+    }
+
+    /**
+     * The directory should know the accounts that existed when it was built, and no others.
+     */
+    @Test
+    public void knowsSeededAccounts() {
+        Assert.assertTrue(accountDirectory.exists(1));
+        Assert.assertFalse(accountDirectory.exists(2));
+        Assert.assertFalse(accountDirectory.exists(0));
+        Assert.assertFalse(accountDirectory.exists(-1));
+    }
+
+    /**
+     * An account the directory is told about should exist without being in the database.
+     */
+    @Test
+    public void knowsAddedAccounts() {
+        accountDirectory.add(5);
+        Assert.assertTrue(accountDirectory.exists(5));
+    }
+
+    /**
+     * An account added to the database behind the directory's back should be found there, and remembered once it
+     * has been.
+     */
+    @Test
+    public void findsAccountsAddedBehindItsBack() throws SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try {
+            PreparedStatement ps = conn.prepareStatement("insert into account (username, password) values (?, ?)");
+            ps.setString(1, "testuser2");
+            ps.setString(2, "password");
+            ps.executeUpdate();
+        } finally {
+            ConnectionUtil.closeConnection(conn);
+        }
+        Assert.assertTrue(accountDirectory.exists(2));
+
+        conn = ConnectionUtil.getConnection();
+        try {
+            conn.prepareStatement("delete from account where account_id = 2").executeUpdate();
+        } finally {
+            ConnectionUtil.closeConnection(conn);
+        }
+        // accounts are never deleted, so the directory keeps answering from memory
+        Assert.assertTrue(accountDirectory.exists(2));
+    }
+}
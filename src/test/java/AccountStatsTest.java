@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.AccountStats;
+import Model.Message;
+import Service.AccountStatsIndex;
+import Service.PostedByIndex;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class AccountStatsTest {
+    private static final long SEEDED_TIME = 1669947792L;
+    private static final long DAY = 86400L;
+
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/stats after a post, and again after the seeded
+     * message is deleted
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the count, first and last times and daily rate of the account's remaining messages
+     */
+    @Test
+    public void getAccountStatsFollowsCreatesAndDeletes() throws IOException, InterruptedException {
+        postMessage(1, SEEDED_TIME + 4 * DAY);
+        Assert.assertEquals(new AccountStats(1, 2, SEEDED_TIME, SEEDED_TIME + 4 * DAY, 0.5).toString(),
+                getStats("accounts/1/stats").toString());
+
+        HttpRequest delete = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()
+                .build();
+        Assert.assertEquals(200, webClient.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(new AccountStats(1, 1, SEEDED_TIME + 4 * DAY, SEEDED_TIME + 4 * DAY, 1).toString(),
+                getStats("accounts/1/stats").toString());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/99/stats for an account with no messages
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a count of 0 and no times
+     */
+    @Test
+    public void getAccountStatsWithoutMessages() throws IOException, InterruptedException {
+        Assert.assertEquals(new AccountStats(99, 0, null, null, 0).toString(),
+                getStats("accounts/99/stats").toString());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/top, with and without a limit
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the accounts with the most messages, most first, cut to the limit
+     */
+    @Test
+    public void getTopAccountsOrdersByMessageCount() throws IOException, InterruptedException {
+        HttpRequest register = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"testuser2\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(register, HttpResponse.BodyHandlers.ofString()).statusCode());
+        for (int i = 0; i < 3; i++) {
+            postMessage(2, SEEDED_TIME);
+        }
+
+        List<AccountStats> top = getTop("accounts/top");
+        Assert.assertEquals(2, top.size());
+        Assert.assertEquals(2, top.get(0).getAccount_id());
+        Assert.assertEquals(3, top.get(0).getMessage_count());
+        Assert.assertEquals(1, top.get(1).getAccount_id());
+
+        List<AccountStats> first = getTop("accounts/top?limit=1");
+        Assert.assertEquals(1, first.size());
+        Assert.assertEquals(2, first.get(0).getAccount_id());
+
+        Assert.assertEquals(400, get("accounts/top?limit=0").statusCode());
+    }
+
+    private void postMessage(int postedBy, long time) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":" + postedBy
+                        + ",\"message_text\":\"stats message\",\"time_posted_epoch\":" + time + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private AccountStats getStats(String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = get(path);
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), AccountStats.class);
+    }
+
+    private List<AccountStats> getTop(String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = get(path);
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<List<AccountStats>>() {});
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Reading statistics straight from the indexes after messages are added and removed
+     *
+     * Expected Result:
+     *  Counts and post times follow the posted_by index, and an account whose messages were all deleted has a count
+     *  of 0 and is left out of the top accounts
+     */
+    @Test
+    public void accountStatsFollowPostedByIndex() {
+        PostedByIndex postedByIndex = new PostedByIndex();
+        AccountStatsIndex accountStats = new AccountStatsIndex(postedByIndex);
+        Message first = new Message(1, 1, "first", SEEDED_TIME);
+        Message second = new Message(2, 1, "second", SEEDED_TIME + DAY);
+        Message other = new Message(3, 2, "other", SEEDED_TIME);
+        postedByIndex.add(first);
+        postedByIndex.add(second);
+        postedByIndex.add(other);
+        postedByIndex.remove(other);
+
+        Assert.assertEquals(new AccountStats(1, 2, SEEDED_TIME, SEEDED_TIME + DAY, 2.0).toString(),
+                accountStats.get(1).toString());
+        Assert.assertEquals(new AccountStats(2, 0, null, null, 0).toString(), accountStats.get(2).toString());
+        Assert.assertEquals(List.of(accountStats.get(1)).toString(), accountStats.top(5).toString());
+
+        postedByIndex.remove(second);
+        Assert.assertEquals(new AccountStats(1, 1, SEEDED_TIME, SEEDED_TIME, 1.0).toString(),
+                accountStats.get(1).toString());
+    }
+}
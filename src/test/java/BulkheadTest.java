@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.Bulkhead;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class BulkheadTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+    CountDownLatch release;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app with a feed-reads bulkhead that has room
+     * for one request and no queue, then fill it with a task that waits until the test lets it go.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        System.setProperty("socialmedia.bulkhead.feed-reads.maxConcurrent", "1");
+        System.setProperty("socialmedia.bulkhead.feed-reads.maxQueued", "0");
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+
+        release = new CountDownLatch(1);
+        Bulkhead feedReads = socialMediaController.getBulkheads().get(0);
+        feedReads.submit(() -> {
+            release.await();
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        app.stop();
+        System.clearProperty("socialmedia.bulkhead.feed-reads.maxConcurrent");
+        System.clearProperty("socialmedia.bulkhead.feed-reads.maxQueued");
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages while the feed-reads bulkhead is full
+     *
+     * Expected Response:
+     *  Status Code: 503, with a Retry-After header
+     */
+    @Test
+    public void feedReadRejectedWhenBulkheadFull() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(503, response.statusCode());
+        Assert.assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+        Assert.assertEquals(1, socialMediaController.getBulkheads().get(0).getStats().getRejected());
+    }
+
+    /**
+     * Sending http requests to POST localhost:8080/login and GET localhost:8080/messages/1 while the feed-reads
+     * bulkhead is full
+     *
+     * Expected Response:
+     *  Status Code: 200 for both, since they run on other bulkheads
+     */
+    @Test
+    public void otherRoutesUnaffectedWhenFeedReadsFull() throws IOException, InterruptedException {
+        HttpRequest loginRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"testuser1\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+
+        Assert.assertEquals(200, webClient.send(loginRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(200, webClient.send(getRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * Running three tasks that each hold a database connection on a bulkhead allowed one connection at a time
+     *
+     * Expected: the bulkhead never holds more than one connection, the tasks over its quota wait on the quota rather
+     * than in the connection pool's queue, and all three finish once the connections are given back
+     */
+    @Test
+    public void bulkheadHoldsNoMoreConnectionsThanItsQuota() throws Exception {
+        Bulkhead bulkhead = new Bulkhead("quota-test", 3, 0, 1);
+        CountDownLatch hold = new CountDownLatch(1);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                tasks.add(bulkhead.submit(() -> {
+                    Connection connection = ConnectionUtil.getConnection();
+                    try {
+                        hold.await();
+                    } finally {
+                        ConnectionUtil.closeConnection(connection);
+                    }
+                    return null;
+                }));
+            }
+            Thread.sleep(500);
+
+            Assert.assertEquals(1, bulkhead.getStats().getConnections());
+            Assert.assertEquals(0, ConnectionUtil.getPoolStats().getWaiting());
+            Connection connection = ConnectionUtil.getConnection();
+            Assert.assertNotNull(connection);
+            ConnectionUtil.closeConnection(connection);
+
+            hold.countDown();
+            for (CompletableFuture<Void> task : tasks) {
+                task.get(5, TimeUnit.SECONDS);
+            }
+            Assert.assertEquals(0, bulkhead.getStats().getConnections());
+        } finally {
+            hold.countDown();
+            bulkhead.shutdown();
+        }
+    }
+}
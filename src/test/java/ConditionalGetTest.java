@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class ConditionalGetTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with the ETag of the previous response, before and
+     * after a message is posted
+     *
+     * Expected Response:
+     *  Status Code: 304 with no body while nothing has changed, then 200 with a new ETag
+     */
+    @Test
+    public void getAllMessagesNotModifiedUntilWrite() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("messages", null);
+        Assert.assertEquals(200, first.statusCode());
+        String eTag = first.headers().firstValue("ETag").orElse(null);
+        Assert.assertNotNull(eTag);
+        Assert.assertTrue(first.headers().firstValue("Last-Modified").isPresent());
+
+        HttpResponse<String> unchanged = get("messages", eTag);
+        Assert.assertEquals(304, unchanged.statusCode());
+        Assert.assertEquals("", unchanged.body());
+        Assert.assertEquals(eTag, unchanged.headers().firstValue("ETag").orElse(null));
+
+        postMessage(1);
+
+        HttpResponse<String> changed = get("messages", eTag);
+        Assert.assertEquals(200, changed.statusCode());
+        Assert.assertNotEquals(eTag, changed.headers().firstValue("ETag").orElse(null));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/{account_id}/messages with the ETag of the previous
+     * response, after another account posts and then after the account itself posts
+     *
+     * Expected Response:
+     *  Status Code: 304 after the other account's post, 200 after the account's own
+     */
+    @Test
+    public void getAllMessagesByUserOnlyChangesWithOwnWrites() throws IOException, InterruptedException {
+        HttpResponse<String> first = get("accounts/2/messages", null);
+        Assert.assertEquals(200, first.statusCode());
+        String eTag = first.headers().firstValue("ETag").orElse(null);
+
+        postMessage(1);
+        Assert.assertEquals(304, get("accounts/2/messages", eTag).statusCode());
+
+        registerAndPost("conditionaluser");
+        Assert.assertEquals(200, get("accounts/2/messages", eTag).statusCode());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages, both streamed and paged, when the message table cannot
+     * be read
+     *
+     * Expected Response:
+     *  No ETag or Last-Modified header, so the failed answer is never taken for that version of the data
+     */
+    @Test
+    public void failedReadsAreNotTagged() throws IOException, InterruptedException, SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try {
+            conn.prepareStatement("drop table message").executeUpdate();
+        } finally {
+            ConnectionUtil.closeConnection(conn);
+        }
+
+        HttpResponse<String> streamed = get("messages", null);
+        Assert.assertEquals(500, streamed.statusCode());
+        Assert.assertFalse(streamed.headers().firstValue("ETag").isPresent());
+        Assert.assertFalse(streamed.headers().firstValue("Last-Modified").isPresent());
+
+        HttpResponse<String> paged = get("messages?limit=1", null);
+        Assert.assertFalse(paged.headers().firstValue("ETag").isPresent());
+        Assert.assertFalse(paged.headers().firstValue("Last-Modified").isPresent());
+    }
+
+    private HttpResponse<String> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return webClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void postMessage(int postedBy) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":" + postedBy
+                        + ",\"message_text\":\"conditional\",\"time_posted_epoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private void registerAndPost(String username) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username
+                        + "\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.body(), response.body().contains("\"account_id\":2"));
+        postMessage(2);
+    }
+}
@@ -0,0 +1,122 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionPool;
+
+public class ConnectionPoolTest {
+    ConnectionPool pool;
+
+    /**
+     * Before every test, create a pool of two connections to an in-memory database that gives up on a checkout
+     * after 200ms and reports connections held for longer than 100ms.
+     */
+    @Before
+    public void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1");
+        h2.setUser("sa");
+        h2.setPassword("sa");
+        pool = new ConnectionPool(h2, 2, 200, 0, 100, false);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Checking out a connection while every connection is in use should wait for the checkout timeout and then
+     * fail with SQLTimeoutException.
+     */
+    @Test
+    public void checkoutTimesOutWhenPoolExhausted() throws SQLException {
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+        long start = System.nanoTime();
+        try {
+            pool.getConnection();
+            Assert.fail("expected the checkout to time out");
+        } catch (SQLTimeoutException e) {
+            Assert.assertTrue(System.nanoTime() - start >= 200_000_000L);
+        }
+        Assert.assertEquals(1, pool.getStats().getTimeouts());
+        first.close();
+        second.close();
+    }
+
+    /**
+     * Closing a pooled connection should close the statements created through it and give the physical connection
+     * back to the pool for the next checkout, rather than closing it.
+     */
+    @Test
+    public void closeReturnsConnectionToPool() throws SQLException {
+        Connection connection = pool.getConnection();
+        Statement statement = connection.createStatement();
+        connection.close();
+
+        Assert.assertTrue(connection.isClosed());
+        Assert.assertTrue(statement.isClosed());
+        Assert.assertThrows(SQLException.class, connection::createStatement);
+        Assert.assertEquals(0, pool.getStats().getActive());
+        Assert.assertEquals(1, pool.getStats().getIdle());
+
+        Connection again = pool.getConnection();
+        Assert.assertEquals(1, pool.getStats().getOpen());
+        again.close();
+        // closing twice gives nothing back a second time
+        again.close();
+        Assert.assertEquals(1, pool.getStats().getIdle());
+    }
+
+    /**
+     * A pooled connection whose physical connection was closed while idle should be thrown away at the next
+     * checkout, which gets a working connection instead.
+     */
+    @Test
+    public void closedIdleConnectionIsReplaced() throws SQLException {
+        Connection connection = pool.getConnection();
+        Connection physical = connection.unwrap(Connection.class);
+        connection.close();
+        physical.close();
+
+        Connection replacement = pool.getConnection();
+        Assert.assertFalse(replacement.isClosed());
+        replacement.createStatement().execute("SELECT 1");
+        Assert.assertEquals(1, pool.getStats().getOpen());
+        replacement.close();
+    }
+
+    /**
+     * A connection held for longer than the leak threshold should be reported once.
+     */
+    @Test
+    public void heldConnectionReportedAsLeak() throws Exception {
+        Connection connection = pool.getConnection();
+        Thread.sleep(500);
+        Assert.assertEquals(1, pool.getStats().getLeaks());
+        connection.close();
+    }
+
+    /**
+     * Once the pool is shut down it should hand out no connections, and a connection given back after the
+     * shutdown should be closed rather than kept.
+     */
+    @Test
+    public void shutdownClosesReturnedConnections() throws SQLException {
+        Connection connection = pool.getConnection();
+        pool.shutdown();
+
+        Assert.assertThrows(SQLException.class, pool::getConnection);
+        connection.close();
+        Assert.assertEquals(0, pool.getStats().getIdle());
+        Assert.assertEquals(0, pool.getStats().getOpen());
+    }
+}
@@ -0,0 +1,218 @@
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import DAO.MessageStore;
+import Model.Message;
+import Service.GroupCommitWriter;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class GroupCommitTest {
+    private static final int POSTS = 20;
+
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app with a writes bulkhead that runs only two
+     * requests at once but can queue every post, and a group-commit window long enough that concurrent posts reliably
+     * share transactions. Posts give their bulkhead slot back while they wait for a commit, so batches can still
+     * grow past two.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        System.setProperty("socialmedia.bulkhead.writes.maxConcurrent", "2");
+        System.setProperty("socialmedia.bulkhead.writes.maxQueued", String.valueOf(POSTS));
+        System.setProperty("socialmedia.groupCommit.maxWaitMicros", "50000");
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("socialmedia.bulkhead.writes.maxConcurrent");
+        System.clearProperty("socialmedia.bulkhead.writes.maxQueued");
+        System.clearProperty("socialmedia.groupCommit.maxWaitMicros");
+        System.clearProperty("socialmedia.groupCommit.maxQueued");
+    }
+
+    /**
+     * Sending many http requests to POST localhost:8080/messages at once
+     *
+     * Expected Response:
+     *  Status Code: 200 for every post, each with its own message_id, and fewer commits than messages on /metrics
+     */
+    @Test
+    public void concurrentPostsShareCommits() throws IOException, InterruptedException {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < POSTS; i++) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,\"message_text\":\"post " + i
+                            + "\",\"time_posted_epoch\":1669947792}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            responses.add(webClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+
+        Set<Integer> messageIds = new HashSet<>();
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            HttpResponse<String> result = response.join();
+            Assert.assertEquals(200, result.statusCode());
+            messageIds.add(objectMapper.readValue(result.body(), Message.class).getMessage_id());
+        }
+        Assert.assertEquals(POSTS, messageIds.size());
+
+        HttpRequest metricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        String metrics = webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString()).body();
+        Assert.assertTrue(metrics, metrics.contains("message_write_messages_total " + POSTS + "\n"));
+        Assert.assertTrue(metrics, sample(metrics, "message_write_commits_total") <= POSTS / 4);
+    }
+
+    /**
+     * Submitting messages to a writer whose queue holds one message, while it is stuck committing the first
+     *
+     * Expected Result:
+     *  The second message waits in the queue, the third is rejected at once with RejectedExecutionException, and the
+     *  queued one is written once the writer is free again
+     */
+    @Test
+    public void fullWriterQueueRejectsAtOnce() throws Exception {
+        CountDownLatch inserting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MessageDAO messageDAO = new MessageDAO();
+        MessageStore blockingStore = (MessageStore) Proxy.newProxyInstance(
+                MessageStore.class.getClassLoader(), new Class<?>[] { MessageStore.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("insertMessage")) {
+                        inserting.countDown();
+                        release.await();
+                    }
+                    return method.invoke(messageDAO, args);
+                });
+        GroupCommitWriter writer = new GroupCommitWriter(blockingStore, 1, 0, 1);
+        try {
+            CompletableFuture<Message> first = writer.submit(new Message(1, "first", 1669947792));
+            Assert.assertTrue(inserting.await(5, TimeUnit.SECONDS));
+            CompletableFuture<Message> second = writer.submit(new Message(1, "second", 1669947792));
+            CompletableFuture<Message> third = writer.submit(new Message(1, "third", 1669947792));
+
+            Assert.assertTrue(third.isCompletedExceptionally());
+            try {
+                third.get();
+                Assert.fail("expected the third message to be rejected");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            Assert.assertEquals(1, writer.getRejected());
+            Assert.assertFalse(second.isDone());
+
+            release.countDown();
+            Assert.assertEquals("first", first.get(5, TimeUnit.SECONDS).getMessage_text());
+            Assert.assertEquals("second", second.get(5, TimeUnit.SECONDS).getMessage_text());
+        } finally {
+            release.countDown();
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/messages while the message writer's queue is full
+     *
+     * Expected Response:
+     *  Status Code: 503 with a Retry-After header, without waiting for the writer, and 200 for the posts that were
+     *  queued once the writer can commit again
+     */
+    @Test
+    public void postRejectedWhenWriterQueueFull() throws Exception {
+        app.stop();
+        System.setProperty("socialmedia.groupCommit.maxQueued", "1");
+        System.setProperty("socialmedia.groupCommit.maxWaitMicros", "0");
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        app.start(8080);
+        Thread.sleep(1000);
+
+        // the writer runs on no bulkhead, so with every connection held it waits at the pool
+        List<Connection> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < ConnectionUtil.getMaxPoolSize(); i++) {
+                held.add(ConnectionUtil.getConnection());
+            }
+            CompletableFuture<HttpResponse<String>> committing = webClient.sendAsync(post(0),
+                    HttpResponse.BodyHandlers.ofString());
+            Thread.sleep(300);
+            CompletableFuture<HttpResponse<String>> queued = webClient.sendAsync(post(1),
+                    HttpResponse.BodyHandlers.ofString());
+            Thread.sleep(300);
+
+            long start = System.nanoTime();
+            HttpResponse<String> rejected = webClient.send(post(2), HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(503, rejected.statusCode());
+            Assert.assertEquals("1", rejected.headers().firstValue("Retry-After").orElse(null));
+            Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+            for (Connection connection : held) {
+                ConnectionUtil.closeConnection(connection);
+            }
+            held.clear();
+            Assert.assertEquals(200, committing.join().statusCode());
+            Assert.assertEquals(200, queued.join().statusCode());
+        } finally {
+            for (Connection connection : held) {
+                ConnectionUtil.closeConnection(connection);
+            }
+        }
+    }
+
+    private static HttpRequest post(int i) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,\"message_text\":\"post " + i
+                        + "\",\"time_posted_epoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private static double sample(String metrics, String name) {
+        for (String line : metrics.split("\n")) {
+            if (line.startsWith(name + " ")) {
+                return Double.parseDouble(line.substring(name.length() + 1));
+            }
+        }
+        throw new AssertionError(name + " not found in " + metrics);
+    }
+}
@@ -0,0 +1,212 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.InMemoryMessageStore;
+import DAO.MessageDAO;
+import DAO.MessageStores;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class InMemoryMessageStoreTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+    Path logDirectory;
+
+    /**
+     * Before every test, reset the database and start the Javalin app on the in-memory message store, with a new
+     * write-ahead log that is seeded from the database.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException, IOException {
+        logDirectory = Files.createTempDirectory("messages-wal");
+        System.setProperty("socialmedia.store", "memory");
+        System.setProperty("socialmedia.store.wal.path", logDirectory.resolve("messages.wal").toString());
+        ConnectionUtil.resetTestDatabase();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        startApp();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        app.stop();
+        MessageStores.closeMemoryStore();
+        System.clearProperty("socialmedia.store");
+        System.clearProperty("socialmedia.store.wal.path");
+        try (var files = Files.list(logDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(logDirectory);
+    }
+
+    private void startApp() throws InterruptedException {
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    /**
+     * Posting, editing and reading messages on the in-memory store, starting from the message already in the database
+     *
+     * Expected Response:
+     *  Status Code: 200 throughout
+     *  Response Body: the seeded message and the new, edited one, by ID and by user
+     */
+    @Test
+    public void memoryStoreServesReadsAndWrites() throws IOException, InterruptedException {
+        HttpResponse<String> postResponse = send(post("{\"posted_by\":1, \"message_text\": \"in memory\", " +
+                "\"time_posted_epoch\": 1669947793}"));
+        Assert.assertEquals(200, postResponse.statusCode());
+        Assert.assertEquals(new Message(2, 1, "in memory", 1669947793),
+                objectMapper.readValue(postResponse.body(), Message.class));
+
+        HttpResponse<String> patchResponse = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/2"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"edited\"}"))
+                .header("Content-Type", "application/json")
+                .build());
+        Assert.assertEquals(200, patchResponse.statusCode());
+
+        HttpResponse<String> getResponse = send(get("http://localhost:8080/accounts/1/messages"));
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(1, 1, "test message 1", 1669947792));
+        expected.add(new Message(2, 1, "edited", 1669947793));
+        Assert.assertEquals(expected, objectMapper.readValue(getResponse.body(), new TypeReference<List<Message>>(){}));
+    }
+
+    /**
+     * Posting a message and deleting another, then restarting the app so the store is rebuilt from its log
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only the posted message; the next message posted gets a new ID
+     */
+    @Test
+    public void memoryStoreReplaysLogOnRestart() throws IOException, InterruptedException {
+        send(post("{\"posted_by\":1, \"message_text\": \"kept\", \"time_posted_epoch\": 1669947793}"));
+        send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/1")).DELETE().build());
+
+        app.stop();
+        MessageStores.closeMemoryStore();
+        startApp();
+
+        HttpResponse<String> getResponse = send(get("http://localhost:8080/messages"));
+        List<Message> expected = new ArrayList<>();
+        expected.add(new Message(2, 1, "kept", 1669947793));
+        Assert.assertEquals(expected, objectMapper.readValue(getResponse.body(), new TypeReference<List<Message>>(){}));
+
+        HttpResponse<String> postResponse = send(post("{\"posted_by\":1, \"message_text\": \"after restart\", " +
+                "\"time_posted_epoch\": 1669947794}"));
+        Assert.assertEquals(3, objectMapper.readValue(postResponse.body(), Message.class).getMessage_id());
+    }
+
+    /**
+     * Seeding a new log from a database table larger than the biggest single log record, then opening the log again
+     *
+     * Expected Result:
+     *  Every message is still there after the reopen, and the next message inserted gets a new ID
+     */
+    @Test
+    public void memoryStoreReopensLargeBootstrappedLog() throws IOException, SQLException {
+        int rows = 300_000;
+        try (Connection connection = ConnectionUtil.getConnection();
+             PreparedStatement statement = connection.prepareStatement("INSERT INTO message "
+                     + "(posted_by, message_text, time_posted_epoch) SELECT 1, REPEAT('x', 255), X FROM SYSTEM_RANGE(1, ?)")) {
+            statement.setInt(1, rows);
+            statement.executeUpdate();
+        }
+        Path logPath = logDirectory.resolve("bootstrapped.wal");
+        try (InMemoryMessageStore store = new InMemoryMessageStore(logPath, false, new MessageDAO())) {
+            Assert.assertNotNull(store.getMessageById(rows + 1));
+        }
+        Assert.assertTrue(Files.size(logPath) > 64 * 1024 * 1024);
+
+        try (InMemoryMessageStore reopened = new InMemoryMessageStore(logPath, false, null)) {
+            Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), reopened.getMessageById(1));
+            Assert.assertEquals("x".repeat(255), reopened.getMessageById(rows + 1).getMessage_text());
+            Message inserted = reopened.insertMessage(new Message(1, "after reopen", 1669947793));
+            Assert.assertEquals(rows + 2, inserted.getMessage_id());
+        }
+    }
+
+    /**
+     * Asking the in-memory store for the page after the largest possible ID
+     *
+     * Expected Result:
+     *  An empty page, at once
+     */
+    @Test
+    public void memoryStorePageAfterLargestIdIsEmpty() throws IOException {
+        try (InMemoryMessageStore store = new InMemoryMessageStore(logDirectory.resolve("paged.wal"), false,
+                new MessageDAO())) {
+            Assert.assertTrue(store.getMessagesAfter(Integer.MAX_VALUE, 10).isEmpty());
+            Assert.assertTrue(store.getMessagesAfter(1, 10).isEmpty());
+            Assert.assertEquals(1, store.getMessagesAfter(Integer.MIN_VALUE, 10).size());
+        }
+    }
+
+    /**
+     * Editing one message many times while the store is open, then opening the log again
+     *
+     * Expected Result:
+     *  The log is compacted while running, so it stays far smaller than one record per edit, and the reopened store
+     *  has the last edit
+     */
+    @Test
+    public void memoryStoreCompactsLogWhileRunning() throws IOException {
+        int edits = 5000;
+        Path logPath = logDirectory.resolve("edited.wal");
+        try (InMemoryMessageStore store = new InMemoryMessageStore(logPath, false, new MessageDAO())) {
+            for (int i = 1; i <= edits; i++) {
+                store.editMessageWithId(1, "edit " + i);
+            }
+        }
+        Assert.assertTrue(Files.size(logPath) < 1100 * 40);
+
+        try (InMemoryMessageStore reopened = new InMemoryMessageStore(logPath, false, null)) {
+            Assert.assertEquals(new Message(1, 1, "edit " + edits, 1669947792), reopened.getMessageById(1));
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder().uri(URI.create(url)).build();
+    }
+
+    private static HttpRequest post(String body) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+}
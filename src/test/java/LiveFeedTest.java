@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class LiveFeedTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web. One sender thread and a short write timeout let a stalled client be caught quickly.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        System.setProperty("socialmedia.sse.senderThreads", "1");
+        System.setProperty("socialmedia.sse.writeTimeoutMs", "1000");
+        System.setProperty("socialmedia.sse.bufferSize", "65536");
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("socialmedia.sse.senderThreads");
+        System.clearProperty("socialmedia.sse.writeTimeoutMs");
+        System.clearProperty("socialmedia.sse.bufferSize");
+    }
+
+    /**
+     * Following GET localhost:8080/events/messages?account_id=1, then posting a message by account 2 and one by
+     * account 1, and editing the latter
+     *
+     * Expected Response:
+     *  A text/event-stream carrying "created" and then "edited" events for account 1's message only
+     */
+    @Test
+    public void liveFeedPushesWritesForFollowedAccount() throws IOException, InterruptedException {
+        BlockingQueue<String> lines = follow("events/messages?account_id=1");
+        Assert.assertEquals(": connected", lines.poll(5, TimeUnit.SECONDS));
+
+        register("livefeeduser");
+        post(2, "from account 2");
+        post(1, "from account 1");
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/3"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"edited live\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        Assert.assertEquals("event: created", nextEventLine(lines, "event: "));
+        String data = nextEventLine(lines, "data: ");
+        Assert.assertTrue(data, data.contains("\"message_text\":\"from account 1\""));
+        Assert.assertEquals("event: edited", nextEventLine(lines, "event: "));
+        data = nextEventLine(lines, "data: ");
+        Assert.assertTrue(data, data.contains("\"message_text\":\"edited live\""));
+    }
+
+    /**
+     * Reconnecting to GET localhost:8080/events/messages with a Last-Event-ID the server cannot resume from
+     *
+     * Expected Response:
+     *  A "resync" event, telling the client to reload the feed
+     */
+    @Test
+    public void liveFeedAsksUnknownClientToResync() throws IOException, InterruptedException {
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/events/messages"))
+                .header("Accept", "text/event-stream")
+                .header("Last-Event-ID", "other-run-41")
+                .build();
+        webClient.sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                .thenAccept(response -> pump(response.body(), lines));
+
+        Assert.assertEquals("event: resync", nextEventLine(lines, "event: "));
+    }
+
+    /**
+     * Following GET localhost:8080/events/messages with a client that never reads, and with one that does, while
+     * enough messages are posted to fill the stalled client's connection
+     *
+     * Expected Response:
+     *  The stalled client is disconnected once a write to it has blocked past the timeout, and the sender thread it
+     *  held goes on to deliver to the other client
+     */
+    @Test
+    public void liveFeedDisconnectsStalledClient() throws IOException, InterruptedException {
+        try (Socket stalled = new Socket()) {
+            stalled.setReceiveBufferSize(1024);
+            stalled.connect(new InetSocketAddress("localhost", 8080));
+            stalled.getOutputStream().write(("GET /events/messages HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Accept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            BlockingQueue<String> lines = follow("events/messages");
+            Assert.assertEquals(": connected", lines.poll(5, TimeUnit.SECONDS));
+
+            String text = "x".repeat(255);
+            StringBuilder batch = new StringBuilder("[");
+            for (int i = 0; i < 200; i++) {
+                batch.append(i == 0 ? "" : ",").append("{\"posted_by\":1,\"message_text\":\"").append(text)
+                        .append("\",\"time_posted_epoch\":1669947792}");
+            }
+            batch.append("]");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (!metrics().contains("sse_timeouts_total 1\n")) {
+                Assert.assertTrue("stalled client was not disconnected", System.nanoTime() < deadline);
+                HttpRequest request = HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:8080/messages/batch"))
+                        .POST(HttpRequest.BodyPublishers.ofString(batch.toString()))
+                        .header("Content-Type", "application/json")
+                        .build();
+                Assert.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+                Thread.sleep(100);
+            }
+
+            lines.clear();
+            post(1, "after the stall");
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            String data;
+            do {
+                data = nextEventLine(lines, "data: ");
+                Assert.assertTrue("live event not delivered after the stall", System.nanoTime() < end);
+            } while (!data.contains("after the stall"));
+        }
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/events/messages?account_id=abc
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void liveFeedRejectsBadAccountId() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/events/messages?account_id=abc"))
+                .header("Accept", "text/event-stream")
+                .build();
+        Assert.assertEquals(400, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private BlockingQueue<String> follow(String path) {
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .header("Accept", "text/event-stream")
+                .build();
+        webClient.sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                .thenAccept(response -> {
+                    Assert.assertEquals(200, response.statusCode());
+                    pump(response.body(), lines);
+                });
+        return lines;
+    }
+
+    private static void pump(Stream<String> body, BlockingQueue<String> lines) {
+        new Thread(() -> {
+            Iterator<String> iterator = body.iterator();
+            while (iterator.hasNext()) {
+                lines.add(iterator.next());
+            }
+        }).start();
+    }
+
+    private static String nextEventLine(BlockingQueue<String> lines, String prefix) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            String line = lines.poll(100, TimeUnit.MILLISECONDS);
+            if (line != null && line.startsWith(prefix)) {
+                return line;
+            }
+        }
+        throw new AssertionError("no line starting with \"" + prefix + "\" within 5 seconds");
+    }
+
+    private String metrics() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private void register(String username) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username
+                        + "\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    private void post(int postedBy, String text) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":" + postedBy + ",\"message_text\":\""
+                        + text + "\",\"time_posted_epoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.LruCache;
+
+public class LruCacheTest {
+
+    /**
+     * Reading the same key twice should load it once, counting one miss and then one hit.
+     */
+    @Test
+    public void secondReadIsAHit() {
+        LruCache<Integer, String> cache = new LruCache<>(10, 0, 0);
+        AtomicInteger loads = new AtomicInteger();
+
+        Assert.assertEquals("value 1", cache.get(1, key -> "value " + loads.incrementAndGet()));
+        Assert.assertEquals("value 1", cache.get(1, key -> "value " + loads.incrementAndGet()));
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, cache.getStats().getMisses());
+        Assert.assertEquals(1, cache.getStats().getHits());
+    }
+
+    /**
+     * A value read after its time to live should be loaded again, and the expired entry counted as evicted.
+     */
+    @Test
+    public void expiredValueIsLoadedAgain() throws InterruptedException {
+        LruCache<Integer, String> cache = new LruCache<>(10, 50, 0);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1, key -> "value " + loads.incrementAndGet());
+        Thread.sleep(100);
+        Assert.assertNull(cache.getIfPresent(1));
+        Assert.assertEquals("value 2", cache.get(1, key -> "value " + loads.incrementAndGet()));
+        Assert.assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    /**
+     * A "not found" answer should be cached for the negative time to live, and not at all when that is 0.
+     */
+    @Test
+    public void notFoundIsCachedOnlyWithNegativeTtl() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        LruCache<Integer, String> negative = new LruCache<>(10, 0, 50);
+        Assert.assertNull(negative.get(1, key -> { loads.incrementAndGet(); return null; }));
+        Assert.assertNull(negative.get(1, key -> { loads.incrementAndGet(); return null; }));
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, negative.getStats().getSize());
+
+        Thread.sleep(100);
+        negative.get(1, key -> { loads.incrementAndGet(); return null; });
+        Assert.assertEquals(2, loads.get());
+
+        LruCache<Integer, String> positiveOnly = new LruCache<>(10, 0, 0);
+        positiveOnly.get(1, key -> { loads.incrementAndGet(); return null; });
+        positiveOnly.get(1, key -> { loads.incrementAndGet(); return null; });
+        Assert.assertEquals(4, loads.get());
+        Assert.assertEquals(0, positiveOnly.getStats().getSize());
+    }
+
+    /**
+     * An invalidated key should be loaded again on the next read.
+     */
+    @Test
+    public void invalidatedKeyIsLoadedAgain() {
+        LruCache<Integer, String> cache = new LruCache<>(10, 0, 0);
+        cache.put(1, "old");
+        cache.invalidate(1);
+
+        Assert.assertNull(cache.getIfPresent(1));
+        Assert.assertEquals("new", cache.get(1, key -> "new"));
+    }
+
+    /**
+     * Once the cache is full, adding a key should push out the least recently used one.
+     */
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        LruCache<Integer, String> cache = new LruCache<>(2, 0, 0);
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.getIfPresent(1);
+        cache.put(3, "three");
+
+        Assert.assertEquals("one", cache.getIfPresent(1));
+        Assert.assertNull(cache.getIfPresent(2));
+        Assert.assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    /**
+     * A load that overlaps a put of the same key should be returned but not stored over the newer value.
+     */
+    @Test
+    public void loadOverlappingWriteToSameKeyIsNotStored() {
+        LruCache<Integer, String> cache = new LruCache<>(10, 0, 0);
+        String loaded = cache.get(1, key -> {
+            cache.put(1, "written");
+            return "stale";
+        });
+
+        Assert.assertEquals("stale", loaded);
+        Assert.assertEquals("written", cache.getIfPresent(1));
+    }
+
+    /**
+     * A load that overlaps writes to other keys should still be stored.
+     */
+    @Test
+    public void loadOverlappingWriteToOtherKeyIsStored() {
+        LruCache<Integer, String> cache = new LruCache<>(10, 0, 0);
+        cache.get(1, key -> {
+            cache.put(2, "two");
+            cache.invalidate(3);
+            return "one";
+        });
+        Map<Integer, String> found = cache.getAll(List.of(4, 5), keys -> {
+            cache.put(6, "six");
+            Map<Integer, String> values = new HashMap<>();
+            values.put(4, "four");
+            return values;
+        });
+
+        Assert.assertEquals("one", cache.getIfPresent(1));
+        Assert.assertEquals(Map.of(4, "four"), found);
+        Assert.assertEquals("four", cache.getIfPresent(4));
+    }
+
+    /**
+     * Reading many keys should load only the missing ones in one call and cache the ones it did not find as not
+     * found.
+     */
+    @Test
+    public void getAllLoadsOnlyMissingKeys() {
+        LruCache<Integer, String> cache = new LruCache<>(10, 0, 60_000);
+        cache.put(1, "one");
+        AtomicInteger loads = new AtomicInteger();
+
+        Map<Integer, String> found = cache.getAll(List.of(1, 2, 3), keys -> {
+            loads.incrementAndGet();
+            Assert.assertEquals(List.of(2, 3), keys);
+            return Map.of(2, "two");
+        });
+        Assert.assertEquals(Map.of(1, "one", 2, "two"), found);
+
+        found = cache.getAll(List.of(2, 3), keys -> {
+            loads.incrementAndGet();
+            return Map.of();
+        });
+        Assert.assertEquals(Map.of(2, "two"), found);
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(3, cache.getStats().getHits());
+        Assert.assertEquals(2, cache.getStats().getMisses());
+    }
+}
@@ -0,0 +1,84 @@
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDAO;
+import Model.Message;
+import Util.ConnectionUtil;
+
+public class MessageDAOTest {
+    MessageDAO messageDAO;
+
+    /**
+     * Before every test, reset the database so it holds only the seeded account and message.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        messageDAO = new MessageDAO();
+    }
+
+    /**
+     * Editing a message should return the row as it was before the edit and leave the new text in the table.
+     */
+    @Test
+    public void editMessageReturnsRowBeforeEdit() {
+        Message before = messageDAO.editMessageWithId(1, "updated message");
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), before);
+        Assert.assertEquals(new Message(1, 1, "updated message", 1669947792), messageDAO.getMessageById(1));
+    }
+
+    /**
+     * Editing a message that does not exist should return null.
+     */
+    @Test
+    public void editMissingMessageReturnsNull() {
+        Assert.assertNull(messageDAO.editMessageWithId(100, "updated message"));
+    }
+
+    /**
+     * Deleting a message should return the row that was deleted and leave it gone from the table.
+     */
+    @Test
+    public void deleteMessageReturnsDeletedRow() {
+        Message deleted = messageDAO.deleteMessageWithId(1);
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), deleted);
+        Assert.assertNull(messageDAO.getMessageById(1));
+        Assert.assertNull(messageDAO.deleteMessageWithId(1));
+    }
+
+    /**
+     * Inserting a batch of messages should return them with new IDs, in the order given, and store every one.
+     */
+    @Test
+    public void insertMessagesReturnsIdsInOrder() {
+        List<Message> inserted = messageDAO.insertMessages(List.of(
+                new Message(1, "first", 1669947793),
+                new Message(1, "second", 1669947794),
+                new Message(1, "third", 1669947795)));
+
+        Assert.assertEquals(List.of(
+                new Message(2, 1, "first", 1669947793),
+                new Message(3, 1, "second", 1669947794),
+                new Message(4, 1, "third", 1669947795)), inserted);
+        Assert.assertEquals(4, messageDAO.getAllMessages().size());
+        Assert.assertTrue(messageDAO.insertMessages(List.of()).isEmpty());
+    }
+
+    /**
+     * A batch with one message that breaks a constraint should fail as a whole, leaving none of its messages in the
+     * table.
+     */
+    @Test
+    public void insertMessagesRollsBackFailedBatch() {
+        List<Message> inserted = messageDAO.insertMessages(List.of(
+                new Message(1, "first", 1669947793),
+                new Message(99, "no such poster", 1669947794),
+                new Message(1, "third", 1669947795)));
+
+        Assert.assertNull(inserted);
+        Assert.assertEquals(1, messageDAO.getAllMessages().size());
+    }
+}
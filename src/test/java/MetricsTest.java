@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class MetricsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/1, then GET localhost:8080/metrics
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: Prometheus text including the request's route latency, the DAO query timing and pool usage
+     */
+    @Test
+    public void metricsIncludeRoutesQueriesAndPool() throws IOException, InterruptedException {
+        HttpRequest getRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .build();
+        webClient.send(getRequest, HttpResponse.BodyHandlers.ofString());
+        HttpRequest missingRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/no/such/route"))
+                .build();
+        webClient.send(missingRequest, HttpResponse.BodyHandlers.ofString());
+
+        HttpRequest metricsRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        HttpResponse<String> response = webClient.send(metricsRequest, HttpResponse.BodyHandlers.ofString());
+        String body = response.body();
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        Assert.assertTrue(body, body.contains(
+                "http_request_duration_seconds{method=\"GET\",route=\"messages/{message_id}\",status=\"200\",quantile=\"0.99\"}"));
+        Assert.assertTrue(body, body.contains(
+                "http_request_duration_seconds_count{method=\"GET\",route=\"unmatched\",status=\"404\"}"));
+        Assert.assertTrue(body, body.contains("dao_query_duration_seconds_count{method=\"MessageDAO.getMessageById\"}"));
+        Assert.assertTrue(body, body.contains("dao_query_errors_total{method=\"MessageDAO.getMessageById\"} 0"));
+        Assert.assertTrue(body, body.contains("db_pool_connections{state=\"max\"}"));
+        Assert.assertTrue(body, body.contains("bulkhead_rejected_total{bulkhead=\"point-reads\"}"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages, then GET localhost:8080/messages?limit=10, checking
+     * GET localhost:8080/metrics after each
+     *
+     * Expected Response:
+     *  The full-feed stream leaves the fragment cache empty; the page stores the fragment of the message it lists
+     */
+    @Test
+    public void fullFeedStreamDoesNotFillFragmentCache() throws IOException, InterruptedException {
+        Assert.assertEquals(200, get("messages").statusCode());
+        String body = get("metrics").body();
+        Assert.assertTrue(body, body.contains("message_fragment_cache_size 0\n"));
+
+        Assert.assertEquals(200, get("messages?limit=10").statusCode());
+        body = get("metrics").body();
+        Assert.assertTrue(body, body.contains("message_fragment_cache_size 1\n"));
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,107 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.ConnectionUtil;
+import Util.MigrationRunner;
+
+public class MigrationRunnerTest {
+    PrintStream stdout;
+    ByteArrayOutputStream output;
+
+    /**
+     * Before every test, reset the database, which also drops the migration history, and capture what the runner
+     * prints.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        stdout = System.out;
+        output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true));
+    }
+
+    @After
+    public void tearDown() {
+        System.setOut(stdout);
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    /**
+     * Migrating an empty database should apply every script in version order, so the indexes of V2 land on the
+     * table V1 creates, and record each one.
+     */
+    @Test
+    public void migrateEmptyDatabaseInOrder() throws SQLException {
+        execute("drop table message; drop table account");
+
+        Assert.assertEquals(2, MigrationRunner.migrate());
+        Assert.assertEquals(List.of("V1__baseline_schema.sql", "V2__message_indexes.sql"),
+                query("select script from schema_history order by version"));
+        Assert.assertEquals(List.of("MESSAGE_POSTED_BY_IDX", "MESSAGE_TIME_POSTED_IDX"),
+                query("select index_name from information_schema.indexes where table_name = 'MESSAGE' "
+                        + "and index_name like 'MESSAGE_%_IDX' order by index_name"));
+    }
+
+    /**
+     * Migrating a second time should apply nothing and leave the history as it was.
+     */
+    @Test
+    public void migrateAgainIsNoOp() throws SQLException {
+        Assert.assertEquals(2, MigrationRunner.migrate());
+        List<String> history = query("select version || ':' || checksum from schema_history order by version");
+
+        Assert.assertEquals(0, MigrationRunner.migrate());
+        Assert.assertEquals(history, query("select version || ':' || checksum from schema_history order by version"));
+    }
+
+    /**
+     * Migrating after an applied script's recorded checksum no longer matches should warn about that script and
+     * not apply it again.
+     */
+    @Test
+    public void migrateWarnsOnChecksumMismatch() throws SQLException {
+        Assert.assertEquals(2, MigrationRunner.migrate());
+        execute("update schema_history set checksum = 0 where version = 2");
+        output.reset();
+
+        Assert.assertEquals(0, MigrationRunner.migrate());
+        Assert.assertTrue(output.toString(),
+                output.toString().contains("Migration V2__message_indexes.sql has changed since it was applied"));
+        Assert.assertFalse(output.toString(), output.toString().contains("V1__baseline_schema.sql"));
+    }
+
+    private static void execute(String sql) throws SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try {
+            for (String statement : sql.split(";")) {
+                conn.createStatement().execute(statement);
+            }
+        } finally {
+            ConnectionUtil.closeConnection(conn);
+        }
+    }
+
+    private static List<String> query(String sql) throws SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try {
+            ResultSet resultSet = conn.createStatement().executeQuery(sql);
+            List<String> rows = new ArrayList<>();
+            while (resultSet.next()) {
+                rows.add(resultSet.getString(1));
+            }
+            return rows;
+        } finally {
+            ConnectionUtil.closeConnection(conn);
+        }
+    }
+}
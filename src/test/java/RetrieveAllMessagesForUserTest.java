@@ -1,4 +1,5 @@
 import java.io.IOException;
+import java.lang.reflect.Proxy;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
@@ -15,7 +16,12 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import Controller.SocialMediaController;
+import DAO.MessageDAO;
+import DAO.MessageStore;
 import Model.Message;
+import Service.AccountDirectory;
+import Service.MessageListener;
+import Service.MessageService;
 import Util.ConnectionUtil;
 import io.javalin.Javalin;
 
@@ -89,4 +95,115 @@ public class RetrieveAllMessagesForUserTest {
         List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
         Assert.assertTrue(actualResult.isEmpty());
     }
+
+    /**
+     * Messages posted and deleted while the app is running are reflected in the user's timeline, which stays in
+     * message ID order even when a message claims an earlier time than the ones before it.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the user's remaining messages, by message ID
+     */
+    @Test
+    public void getAllMessagesFromUserFollowsCreatesAndDeletes() throws IOException, InterruptedException {
+        for (long time : new long[] {1669947800, 1669947700}) {
+            HttpRequest postRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,\"message_text\":\"at " + time
+                            + "\",\"time_posted_epoch\":" + time + "}"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            Assert.assertEquals(200, webClient.send(postRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        }
+        HttpRequest deleteRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()
+                .build();
+        Assert.assertEquals(200, webClient.send(deleteRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages"))
+                .build();
+        HttpResponse response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(2, 1, "at 1669947800", 1669947800));
+        expectedResult.add(new Message(3, 1, "at 1669947700", 1669947700));
+        List<Message> actualResult = objectMapper.readValue(response.body().toString(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+
+        HttpRequest pageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages?after_id=2&limit=5"))
+                .build();
+        HttpResponse pageResponse = webClient.send(pageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, pageResponse.statusCode());
+        List<Message> page = objectMapper.readValue(pageResponse.body().toString(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult.subList(1, 2), page);
+    }
+
+    /**
+     * Creating messages through a MessageService whose store lets another thread delete, or edit, each new message
+     * as soon as its insert commits, before the service has brought its indexes up to date
+     *
+     * Expected Result:
+     *  The deleted message is gone from the user's messages, statistics and search, and the edited one is listed and
+     *  found by its new text only; listeners hear "deleted" alone, and "created" with the edited text
+     */
+    @Test
+    public void getAllMessagesFromUserWhenWritesOvertakeCreate() throws Exception {
+        MessageService[] service = new MessageService[1];
+        String[] overtakeWith = new String[1];
+        MessageStore dao = new MessageDAO();
+        MessageStore store = (MessageStore) Proxy.newProxyInstance(MessageStore.class.getClassLoader(),
+                new Class<?>[] {MessageStore.class}, (proxy, method, args) -> {
+                    Object result = method.invoke(dao, args);
+                    if (method.getName().equals("insertMessage") && result != null) {
+                        int messageId = ((Message) result).getMessage_id();
+                        Thread writer = new Thread(() -> {
+                            if (overtakeWith[0] == null) {
+                                service[0].deleteMessageWithId(messageId);
+                            } else {
+                                service[0].editMessageWithId(messageId, overtakeWith[0]);
+                            }
+                        });
+                        writer.start();
+                        writer.join();
+                    }
+                    return result;
+                });
+        service[0] = new MessageService(new AccountDirectory(), store);
+        List<String> events = new ArrayList<>();
+        service[0].addListener(new MessageListener() {
+            public void onCreate(Message message) {
+                events.add("created " + message.getMessage_text());
+            }
+            public void onEdit(Message message) {
+                events.add("edited " + message.getMessage_text());
+            }
+            public void onDelete(Message message) {
+                events.add("deleted " + message.getMessage_text());
+            }
+        });
+        try {
+            Message deleted = service[0].createMessage(new Message(1, "overtaken by delete", 1669947900));
+            Assert.assertNotNull(deleted);
+            overtakeWith[0] = "after the edit";
+            Message edited = service[0].createMessage(new Message(1, "before the edit", 1669947800));
+            Assert.assertNotNull(edited);
+
+            List<Message> expectedResult = new ArrayList<>();
+            expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+            expectedResult.add(new Message(edited.getMessage_id(), 1, "after the edit", 1669947800));
+            Assert.assertEquals(expectedResult, service[0].getAllMessagesByUser(1));
+            Assert.assertEquals(expectedResult, service[0].getMessagesByUserByTime(1, 0, 0, Long.MAX_VALUE, 10));
+            Assert.assertEquals(2, service[0].getAccountStats(1).getMessage_count());
+            Assert.assertEquals(Long.valueOf(1669947800), service[0].getAccountStats(1).getLast_posted_epoch());
+            Assert.assertEquals(new ArrayList<Message>(), service[0].searchMessages("overtaken", Integer.MAX_VALUE, 10));
+            Assert.assertEquals(new ArrayList<Message>(), service[0].searchMessages("before", Integer.MAX_VALUE, 10));
+            Assert.assertEquals(expectedResult.subList(1, 2), service[0].searchMessages("after", Integer.MAX_VALUE, 10));
+            Assert.assertEquals(List.of("deleted overtaken by delete", "created after the edit"), events);
+        } finally {
+            service[0].shutdown();
+        }
+    }
 }
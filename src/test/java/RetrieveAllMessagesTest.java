@@ -100,14 +100,69 @@ public class RetrieveAllMessagesTest {
 
 
     private void removeInitialMessage(){
+        Connection conn = ConnectionUtil.getConnection();
         try {
-                Connection conn = ConnectionUtil.getConnection();
                 PreparedStatement ps = conn.prepareStatement("delete from message where message_id = ?");
                 ps.setInt(1, 1);
                 ps.executeUpdate();
         } catch (SQLException e) {
                 e.printStackTrace();
+        } finally {
+                ConnectionUtil.closeConnection(conn);
         }
     }
 
+
+    /**
+     * Sending an http request to GET localhost:8080/messages twice, with the listed message edited in between
+     *
+     * Expected Response:
+     *  Status Code: 200 both times, the second list showing the new text rather than the first list's
+     */
+    @Test
+    public void getAllMessagesAfterEditShowsNewText() throws IOException, InterruptedException {
+        HttpRequest listRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        HttpResponse<String> before = webClient.send(listRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, before.statusCode());
+        Assert.assertTrue(before.body(), before.body().contains("test message 1"));
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"edited text\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> after = webClient.send(listRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, after.statusCode());
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "edited text", 1669947792));
+        List<Message> actualResult = objectMapper.readValue(after.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages when the message table cannot be read
+     *
+     * Expected Response:
+     *  Status Code: 500 rather than a 200 with an empty list
+     */
+    @Test
+    public void getAllMessagesDatabaseFailure() throws IOException, InterruptedException, SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try {
+            conn.prepareStatement("drop table message").executeUpdate();
+        } finally {
+            ConnectionUtil.closeConnection(conn);
+        }
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(500, response.statusCode());
+        Assert.assertFalse(response.body(), response.body().startsWith("["));
+    }
 }
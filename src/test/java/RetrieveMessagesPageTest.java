@@ -0,0 +1,190 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesPageTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web. Then post two more messages so there is more than one page to walk.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException, IOException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+        postMessage("test message 2", 1669947793);
+        postMessage("test message 3", 1669947794);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private void postMessage(String text, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": " + timePostedEpoch + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=2
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the first two messages
+     *  Link Header: points at the page after message 2
+     */
+    @Test
+    public void getFirstPageOfMessages() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=2"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+
+        Assert.assertEquals(200, status);
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        expectedResult.add(new Message(2, 1, "test message 2", 1669947793));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+        Assert.assertEquals("</messages?after_id=2&limit=2>; rel=\"next\"",
+                response.headers().firstValue("Link").orElse(null));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?after_id=2&limit=2
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the last message, with no Link header
+     */
+    @Test
+    public void getLastPageOfMessages() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?after_id=2&limit=2"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+
+        Assert.assertEquals(200, status);
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(3, 1, "test message 3", 1669947794));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+        Assert.assertFalse(response.headers().firstValue("Link").isPresent());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?after_id=1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the user's messages after message 1
+     */
+    @Test
+    public void getPageOfMessagesForUser() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/1/messages?after_id=1"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+
+        Assert.assertEquals(200, status);
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(2, 1, "test message 2", 1669947793));
+        expectedResult.add(new Message(3, 1, "test message 3", 1669947794));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?limit=0
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getPageOfMessagesInvalidLimit() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages?limit=0"))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        int status = response.statusCode();
+
+        Assert.assertEquals(400, status);
+    }
+
+    /**
+     * Sending http requests for one-message pages of the user's messages, by ID and by time, after message 1 is
+     * deleted from the database behind the server's back, as if by a delete still in flight
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: message 2 rather than an empty page, since the index still has message 1
+     *  Link Header: present, since more messages follow
+     */
+    @Test
+    public void getPageOfMessagesSkipsConcurrentlyDeletedMessage() throws IOException, InterruptedException, SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try {
+            conn.prepareStatement("delete from message where message_id = 1").executeUpdate();
+        } finally {
+            ConnectionUtil.closeConnection(conn);
+        }
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(2, 1, "test message 2", 1669947793));
+        for (String path : new String[] {"accounts/1/messages?limit=1", "accounts/1/messages?since=0&limit=1",
+                "messages?since=0&limit=1"}) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/" + path))
+                    .build();
+            HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(200, response.statusCode());
+            List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+            Assert.assertEquals(path, expectedResult, actualResult);
+            Assert.assertTrue(path, response.headers().firstValue("Link").isPresent());
+        }
+    }
+}
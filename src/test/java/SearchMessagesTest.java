@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SearchMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?q=Test+MESSAGE
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the seeded message and a posted one with both words in any case, newest first, and not the
+     *  posted message missing one of the words
+     */
+    @Test
+    public void searchMessagesMatchesEveryWord() throws IOException, InterruptedException {
+        Message posted = postMessage("another MESSAGE, for the test!");
+        postMessage("a message without the other word");
+
+        List<Integer> ids = search("Test+MESSAGE");
+        List<Integer> expected = new ArrayList<>();
+        expected.add(posted.getMessage_id());
+        expected.add(1);
+        Assert.assertEquals(expected, ids);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search after the only matching message is edited to
+     * drop the word, and after a matching message is deleted
+     *
+     * Expected Response:
+     *  Status Code: 200 with neither message found by its old text, and the edited message found by its new text;
+     *  the index keeps only the words of the text that is left
+     */
+    @Test
+    public void searchMessagesFollowsEditsAndDeletes() throws IOException, InterruptedException {
+        Message posted = postMessage("searchable words");
+
+        HttpRequest patch = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/" + posted.getMessage_id()))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\":\"replaced text\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patch, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(new ArrayList<Integer>(), search("searchable"));
+        Assert.assertEquals(List.of(posted.getMessage_id()), search("replaced"));
+
+        HttpRequest delete = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()
+                .build();
+        Assert.assertEquals(200, webClient.send(delete, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(new ArrayList<Integer>(), search("test"));
+
+        // only "replaced text" is left; the words the edit and the delete took away are out of the index
+        String metrics = get("metrics").body();
+        Assert.assertTrue(metrics, metrics.contains("message_search_words 2\n"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?q=message&limit=1, then following its Link header
+     *
+     * Expected Response:
+     *  Status Code: 200 with one message per page, newest first, and a Link header to the next page
+     */
+    @Test
+    public void searchMessagesPagesNewestFirst() throws IOException, InterruptedException {
+        Message posted = postMessage("second message");
+
+        HttpResponse<String> first = get("messages/search?q=message&limit=1");
+        Assert.assertEquals(200, first.statusCode());
+        Assert.assertEquals(List.of(posted.getMessage_id()), ids(first));
+        String link = first.headers().firstValue("Link").orElse(null);
+        Assert.assertEquals("</messages/search?q=message&before_id=" + posted.getMessage_id()
+                + "&limit=1>; rel=\"next\"", link);
+
+        HttpResponse<String> second = get(link.substring(2, link.indexOf('>')));
+        Assert.assertEquals(List.of(1), ids(second));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search with no words to search for
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchMessagesWithoutWordsIsRejected() throws IOException, InterruptedException {
+        Assert.assertEquals(400, get("messages/search").statusCode());
+        Assert.assertEquals(400, get("messages/search?q=%20!%3F").statusCode());
+    }
+
+    private Message postMessage(String text) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":1,\"message_text\":\"" + text
+                        + "\",\"time_posted_epoch\":1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class);
+    }
+
+    private List<Integer> search(String query) throws IOException, InterruptedException {
+        HttpResponse<String> response = get("messages/search?q=" + query);
+        Assert.assertEquals(200, response.statusCode());
+        return ids(response);
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<Integer> ids(HttpResponse<String> response) throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        for (Message message : objectMapper.readValue(response.body(), new TypeReference<List<Message>>() {})) {
+            ids.add(message.getMessage_id());
+        }
+        return ids;
+    }
+}
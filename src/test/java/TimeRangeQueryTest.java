@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class TimeRangeQueryTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?since=100&until=300, with messages posted out of time
+     * order
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: the messages posted at or after 100 and before 300, in time order
+     */
+    @Test
+    public void getAllMessagesInTimeRange() throws IOException, InterruptedException {
+        int at300 = postMessage(300);
+        int at100 = postMessage(100);
+        int at200 = postMessage(200);
+        postMessage(50);
+
+        Assert.assertEquals(List.of(at100, at200), ids(get("messages?since=100&until=300")));
+        Assert.assertEquals(List.of(at300, 1), ids(get("messages?since=300")));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?until=1000&limit=2, then following its Link header
+     *
+     * Expected Response:
+     *  Status Code: 200 with two messages per page in time order, messages posted in the same second ordered by ID,
+     *  and a Link header carrying a cursor to the next page
+     */
+    @Test
+    public void getAllMessagesInTimeRangePagesWithCursor() throws IOException, InterruptedException {
+        int first = postMessage(200);
+        int second = postMessage(100);
+        int third = postMessage(200);
+
+        HttpResponse<String> page = get("messages?until=1000&limit=2");
+        Assert.assertEquals(List.of(second, first), ids(page));
+        String link = page.headers().firstValue("Link").orElse(null);
+        Assert.assertNotNull(link);
+        Assert.assertTrue(link, link.startsWith("</messages?until=1000&cursor="));
+
+        HttpResponse<String> next = get(link.substring(2, link.indexOf('>')));
+        Assert.assertEquals(List.of(third), ids(next));
+        Assert.assertFalse(next.headers().firstValue("Link").isPresent());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?since=150 after another account posts
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: only account 1's messages posted at or after 150, in time order
+     */
+    @Test
+    public void getAllMessagesByUserInTimeRange() throws IOException, InterruptedException {
+        HttpRequest register = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\":\"testuser2\",\"password\":\"password\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(register, HttpResponse.BodyHandlers.ofString()).statusCode());
+        int at200 = postMessage(200);
+        postMessage(100);
+        postMessage(2, 300);
+
+        Assert.assertEquals(List.of(at200, 1), ids(get("accounts/1/messages?since=150")));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages with a malformed since, a malformed cursor, and
+     * after_id together with since
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getAllMessagesInTimeRangeRejectsBadParams() throws IOException, InterruptedException {
+        Assert.assertEquals(400, get("messages?since=yesterday").statusCode());
+        Assert.assertEquals(400, get("messages?since=0&cursor=nonsense").statusCode());
+        Assert.assertEquals(400, get("messages?since=0&after_id=1").statusCode());
+    }
+
+    private int postMessage(long time) throws IOException, InterruptedException {
+        return postMessage(1, time);
+    }
+
+    private int postMessage(int postedBy, long time) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"posted_by\":" + postedBy
+                        + ",\"message_text\":\"posted at " + time + "\",\"time_posted_epoch\":" + time + "}"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class).getMessage_id();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<Integer> ids(HttpResponse<String> response) throws IOException {
+        Assert.assertEquals(200, response.statusCode());
+        List<Integer> ids = new ArrayList<>();
+        for (Message message : objectMapper.readValue(response.body(), new TypeReference<List<Message>>() {})) {
+            ids.add(message.getMessage_id());
+        }
+        return ids;
+    }
+}
@@ -3,6 +3,9 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -119,4 +122,51 @@ public class UserLoginTest {
         Assert.assertEquals("", response.body().toString());
 
     }
+
+    /**
+     * Sending an http request to POST localhost:8080/login while every database connection is checked out
+     *
+     * Expected Response:
+     *  Status Code: 503, with a Retry-After header, once the checkout times out
+     *  and the failed query counted in dao_query_errors_total
+     */
+    @Test
+    public void loginUnavailableWhenPoolExhausted() throws IOException, InterruptedException {
+        String errors = "dao_query_errors_total{method=\"AccountDAO.verifyLogin\"} ";
+        long errorsBefore = metric(errors);
+        List<Connection> held = new ArrayList<>();
+        try {
+            for (int i = 0; i < ConnectionUtil.getMaxPoolSize(); i++) {
+                held.add(ConnectionUtil.getConnection());
+            }
+            HttpRequest postRequest = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/login"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{" +
+                            "\"username\": \"testuser1\", " +
+                            "\"password\": \"password\" }"))
+                    .header("Content-Type", "application/json")
+                    .build();
+            HttpResponse<String> response = webClient.send(postRequest, HttpResponse.BodyHandlers.ofString());
+
+            Assert.assertEquals(503, response.statusCode());
+            Assert.assertEquals("1", response.headers().firstValue("Retry-After").orElse(null));
+        } finally {
+            for (Connection connection : held) {
+                ConnectionUtil.closeConnection(connection);
+            }
+        }
+        Assert.assertEquals(errorsBefore + 1, metric(errors));
+    }
+
+    private long metric(String prefix) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/metrics"))
+                .build();
+        for (String line : webClient.send(request, HttpResponse.BodyHandlers.ofString()).body().split("\n")) {
+            if (line.startsWith(prefix)) {
+                return Long.parseLong(line.substring(prefix.length()).trim());
+            }
+        }
+        throw new AssertionError("no metric " + prefix);
+    }
 }
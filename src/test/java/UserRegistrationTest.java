@@ -3,6 +3,9 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -14,6 +17,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import Controller.SocialMediaController;
 import Model.Account;
 import Util.ConnectionUtil;
+import Util.Metrics;
 import io.javalin.Javalin;
 
 public class UserRegistrationTest {
@@ -141,4 +145,79 @@ public class UserRegistrationTest {
         Assert.assertEquals("", response.body().toString());
 
     }
+
+    /**
+     * Sending an http request to POST localhost:8080/register with a username added to the database behind the
+     * service's back, so the Bloom filter has never seen it
+     *
+     * Expected Response:
+     *  Status Code: 400, from the insert's unique constraint violation, which is not counted as a failed query;
+     *  the username availability query is skipped
+     */
+    @Test
+    public void registerUsernameTakenBehindServiceBack() throws IOException, InterruptedException, SQLException {
+        Connection conn = ConnectionUtil.getConnection();
+        try {
+            PreparedStatement ps = conn.prepareStatement("insert into account (username, password) values (?, ?)");
+            ps.setString(1, "sneaky");
+            ps.setString(2, "password");
+            ps.executeUpdate();
+        } finally {
+            ConnectionUtil.closeConnection(conn);
+        }
+        double availabilityChecks = metric("dao_query_duration_seconds_count{method=\"AccountDAO.usernameAvailable\"}");
+        double insertErrors = metric("dao_query_errors_total{method=\"AccountDAO.insertAccount\"}");
+
+        HttpResponse<String> response = webClient.send(register("sneaky"), HttpResponse.BodyHandlers.ofString());
+
+        Assert.assertEquals(400, response.statusCode());
+        Assert.assertEquals("", response.body());
+        Assert.assertEquals(availabilityChecks,
+                metric("dao_query_duration_seconds_count{method=\"AccountDAO.usernameAvailable\"}"), 0);
+        Assert.assertEquals(insertErrors, metric("dao_query_errors_total{method=\"AccountDAO.insertAccount\"}"), 0);
+    }
+
+    /**
+     * Sending http requests to POST localhost:8080/register with a new username, then with one already registered
+     *
+     * Expected Response:
+     *  Status Code: 200 then 400; only the registered username, which the Bloom filter has seen, is checked for
+     *  availability, and it never reaches the insert
+     */
+    @Test
+    public void registerChecksAvailabilityOnlyForSeenUsernames() throws IOException, InterruptedException {
+        String availability = "dao_query_duration_seconds_count{method=\"AccountDAO.usernameAvailable\"}";
+        String inserts = "dao_query_duration_seconds_count{method=\"AccountDAO.insertAccount\"}";
+        double availabilityChecks = metric(availability);
+        double insertCount = metric(inserts);
+
+        Assert.assertEquals(200, webClient.send(register("newuser"), HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(availabilityChecks, metric(availability), 0);
+        Assert.assertEquals(insertCount + 1, metric(inserts), 0);
+
+        Assert.assertEquals(400, webClient.send(register("testuser1"), HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(availabilityChecks + 1, metric(availability), 0);
+        Assert.assertEquals(insertCount + 1, metric(inserts), 0);
+    }
+
+    private HttpRequest register(String username) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"" + username + "\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private static double metric(String prefix) {
+        StringBuilder out = new StringBuilder();
+        Metrics.writeTo(out);
+        for (String line : out.toString().split("\n")) {
+            if (line.startsWith(prefix + " ")) {
+                return Double.parseDouble(line.substring(prefix.length() + 1));
+            }
+        }
+        throw new AssertionError("no metric " + prefix);
+    }
 }